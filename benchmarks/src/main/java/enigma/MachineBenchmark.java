@@ -0,0 +1,76 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of whole-machine conversion, by character and by message
+ *  of several lengths.
+ *  @author Fourth Teerakapibal
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MachineBenchmark {
+
+    /** Number of letters in each message. */
+    @Param({"16", "1024", "65536"})
+    public int length;
+
+    /** Build the message. */
+    @Setup(Level.Trial)
+    public void setUpMessage() {
+        _message = Naval.message(length);
+        _indices = new int[length];
+        Alphabet alpha = new Alphabet();
+        for (int i = 0; i < length; i += 1) {
+            _indices[i] = alpha.toInt(_message.charAt(i));
+        }
+    }
+
+    /** Start each iteration from the same machine state. */
+    @Setup(Level.Iteration)
+    public void setUpMachine() {
+        _machine = Naval.machine();
+    }
+
+    /** Convert the message one index at a time with convert(int). */
+    @Benchmark
+    public int convertInt() {
+        int sum = 0;
+        for (int c : _indices) {
+            sum += _machine.convert(c);
+        }
+        return sum;
+    }
+
+    /** Convert the message with convert(String). */
+    @Benchmark
+    public String convertString() {
+        return _machine.convert(_message);
+    }
+
+    /** The message, as letters. */
+    private String _message;
+
+    /** The message, as alphabet indices. */
+    private int[] _indices;
+
+    /** Machine under test. */
+    private Machine _machine;
+
+}
@@ -0,0 +1,78 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** End-to-end runs of Main over the integration tests in
+ *  testing/correct, as "make integration" runs them: F.in with F.conf
+ *  if it exists, and otherwise with default.conf.  The directory holding
+ *  the tests is given by the property enigma.testing, by default as seen
+ *  from the benchmarks directory.
+ *  @author Fourth Teerakapibal
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MainBenchmark {
+
+    /** Name of the test, F for F.in. */
+    @Param({"caroll3", "caroll4", "fix", "newchars", "permuted", "reduce",
+            "reduce2", "simple", "stepin", "trivial", "trivial1", "trivial2",
+            "trivialec"})
+    public String test;
+
+    /** Locate the test's files and a scratch output file. */
+    @Setup
+    public void setUp() throws IOException {
+        File dir = new File(System.getProperty("enigma.testing",
+                                               "../testing/correct"));
+        File input = new File(dir, test + ".in");
+        File config = new File(dir, test + ".conf");
+        if (!config.exists()) {
+            config = new File(dir, "default.conf");
+        }
+        if (!input.exists()) {
+            throw new IOException("no test input " + input);
+        }
+        _output = File.createTempFile("enigma-bench", ".out");
+        _args = new String[] {
+            config.getPath(), input.getPath(), _output.getPath()
+        };
+    }
+
+    /** Remove the scratch output file. */
+    @TearDown
+    public void tearDown() {
+        _output.delete();
+    }
+
+    /** Configure a machine and convert the whole test input. */
+    @Benchmark
+    public void process() {
+        Main.main(_args);
+    }
+
+    /** Arguments to Main. */
+    private String[] _args;
+
+    /** Scratch output file. */
+    private File _output;
+
+}
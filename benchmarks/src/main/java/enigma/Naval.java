@@ -0,0 +1,62 @@
+package enigma;
+
+import java.util.ArrayList;
+
+/** The naval rotors of testing/correct/default.conf, for use in
+ *  benchmarks.
+ *  @author Fourth Teerakapibal
+ */
+final class Naval {
+
+    /** Not instantiable. */
+    private Naval() {
+    }
+
+    /** Return new copies of the naval rotors I through V, Beta, and the
+     *  B reflector. */
+    static ArrayList<Rotor> rotors() {
+        Alphabet alpha = new Alphabet();
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new MovingRotor("I", new Permutation(
+            "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)", alpha), "Q"));
+        rotors.add(new MovingRotor("II", new Permutation(
+            "(FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)", alpha),
+            "E"));
+        rotors.add(new MovingRotor("III", new Permutation(
+            "(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)", alpha), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(
+            "(AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)", alpha), "J"));
+        rotors.add(new MovingRotor("V", new Permutation(
+            "(AVOLDRWFIUQ)(BZKSMNHYC) (EGTJPX)", alpha), "Z"));
+        rotors.add(new FixedRotor("Beta", new Permutation(
+            "(ALBEVFCYODJWUGNMQTZSKPR) (HIX)", alpha)));
+        rotors.add(new Reflector("B", new Permutation(
+            "(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP) (RX) (SZ) "
+            + "(TV)", alpha)));
+        return rotors;
+    }
+
+    /** Return a five-slot, three-pawl machine set up as
+     *  "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)". */
+    static Machine machine() {
+        Machine machine = new Machine(new Alphabet(), 5, 3, rotors());
+        machine.insertRotors(new String[]{"B", "Beta", "III", "IV", "I"});
+        machine.setRotors("AXLE", "AAAA");
+        machine.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                                             new Alphabet()));
+        return machine;
+    }
+
+    /** Return a message of LENGTH upper-case letters, the same on every
+     *  call. */
+    static String message(int length) {
+        StringBuilder msg = new StringBuilder(length);
+        long seed = 1;
+        for (int i = 0; i < length; i += 1) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            msg.append((char) ('A' + (int) ((seed >>> 33) % 26)));
+        }
+        return msg.toString();
+    }
+
+}
@@ -0,0 +1,71 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Permutation and Alphabet lookups.
+ *  @author Fourth Teerakapibal
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermutationBenchmark {
+
+    /** Build the permutation of rotor I. */
+    @Setup
+    public void setUp() {
+        _alphabet = new Alphabet();
+        _perm = new Permutation(
+            "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)", _alphabet);
+    }
+
+    /** Permute each index once. */
+    @Benchmark
+    public int permute() {
+        int sum = 0;
+        for (int p = 0; p < _perm.size(); p += 1) {
+            sum += _perm.permute(p);
+        }
+        return sum;
+    }
+
+    /** Invert each index once. */
+    @Benchmark
+    public int invert() {
+        int sum = 0;
+        for (int c = 0; c < _perm.size(); c += 1) {
+            sum += _perm.invert(c);
+        }
+        return sum;
+    }
+
+    /** Look up each letter of the alphabet once. */
+    @Benchmark
+    public int alphabetToInt() {
+        int sum = 0;
+        for (char c = 'A'; c <= 'Z'; c += 1) {
+            sum += _alphabet.toInt(c);
+        }
+        return sum;
+    }
+
+    /** The upper-case alphabet. */
+    private Alphabet _alphabet;
+
+    /** Permutation under test. */
+    private Permutation _perm;
+
+}
@@ -0,0 +1,62 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of conversion through a single rotor.
+ *  @author Fourth Teerakapibal
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RotorBenchmark {
+
+    /** Take rotor III, at setting D with ring offset B. */
+    @Setup
+    public void setUp() {
+        for (Rotor rotor : Naval.rotors()) {
+            if (rotor.name().equals("III")) {
+                _rotor = rotor;
+            }
+        }
+        _rotor.set('D');
+        _rotor.setoffset(1);
+    }
+
+    /** Convert each index forward once. */
+    @Benchmark
+    public int convertForward() {
+        int sum = 0;
+        for (int p = 0; p < _rotor.size(); p += 1) {
+            sum += _rotor.convertForward(p);
+        }
+        return sum;
+    }
+
+    /** Convert each index backward once. */
+    @Benchmark
+    public int convertBackward() {
+        int sum = 0;
+        for (int e = 0; e < _rotor.size(); e += 1) {
+            sum += _rotor.convertBackward(e);
+        }
+        return sum;
+    }
+
+    /** Rotor under test. */
+    private Rotor _rotor;
+
+}
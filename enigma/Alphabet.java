@@ -1,5 +1,9 @@
 package enigma;
 
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
  *  to and from indices into the alphabet.
  *  @author Fourth Teerakapibal
@@ -10,6 +14,40 @@ class Alphabet {
      *  K (numbering from 0). No character may be duplicated. */
     Alphabet(String chars) {
         _chars = chars;
+        char lo = Character.MAX_VALUE, hi = Character.MIN_VALUE;
+        for (int i = 0; i < chars.length(); i++) {
+            lo = (char) Math.min(lo, chars.charAt(i));
+            hi = (char) Math.max(hi, chars.charAt(i));
+        }
+        int span = chars.isEmpty() ? 0 : hi - lo + 1;
+        if (span <= Math.max(DENSE_SPAN, DENSE_FACTOR * chars.length())) {
+            _base = lo;
+            _dense = new int[span];
+            Arrays.fill(_dense, -1);
+            for (int i = 0; i < chars.length(); i++) {
+                if (_dense[chars.charAt(i) - lo] == -1) {
+                    _dense[chars.charAt(i) - lo] = i;
+                }
+            }
+            _keys = null;
+            _values = null;
+            _shift = 0;
+        } else {
+            int bits = 32 - Integer.numberOfLeadingZeros(2 * chars.length());
+            _base = 0;
+            _dense = null;
+            _keys = new char[1 << bits];
+            _values = new int[1 << bits];
+            _shift = 32 - bits;
+            Arrays.fill(_values, -1);
+            for (int i = 0; i < chars.length(); i++) {
+                int slot = slot(chars.charAt(i));
+                if (_values[slot] == -1) {
+                    _keys[slot] = chars.charAt(i);
+                    _values[slot] = i;
+                }
+            }
+        }
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -24,10 +62,7 @@ class Alphabet {
 
     /** Returns true if preprocess(CH) is in this alphabet. */
     boolean contains(char ch) {
-        if (_chars.indexOf(ch) == -1) {
-            return false;
-        }
-        return true;
+        return index(ch) != -1;
     }
 
     /** Returns character number INDEX in the alphabet, where
@@ -40,16 +75,61 @@ class Alphabet {
     /** Returns the index of character preprocess(CH), which must be in
      *  the alphabet. This is the inverse of toChar(). */
     int toInt(char ch) {
-        int idx = 0;
-        for (int i = 0; i < size(); i++) {
-            if (ch == _chars.charAt(i)) {
-                idx = i;
-                break;
-            }
+        int idx = index(ch);
+        if (idx == -1) {
+            throw error("Character not in alphabet");
         }
         return idx;
     }
+
+    /** Returns the index of CH, or -1 if CH is not in the alphabet. */
+    int index(char ch) {
+        if (_dense != null) {
+            int off = ch - _base;
+            return off >= 0 && off < _dense.length ? _dense[off] : -1;
+        }
+        int slot = slot(ch);
+        return _keys[slot] == ch ? _values[slot] : -1;
+    }
+
+    /** Returns the hash slot holding CH, or the empty slot where it
+     *  belongs. */
+    private int slot(char ch) {
+        int mask = _keys.length - 1;
+        int slot = (ch * HASH_MULTIPLIER) >>> _shift;
+        while (_values[slot] != -1 && _keys[slot] != ch) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /** Character ranges at most this wide are always indexed densely. */
+    private static final int DENSE_SPAN = 4096;
+
+    /** Ranges up to this multiple of the alphabet size are indexed
+     *  densely; sparser alphabets use the hash table. */
+    private static final int DENSE_FACTOR = 8;
+
+    /** Fibonacci hashing multiplier for the sparse table. */
+    private static final int HASH_MULTIPLIER = 0x9E3779B1;
+
     /** String of Characters in alphabets.*/
     private String _chars;
 
+    /** Lowest character of the dense table's range. */
+    private final char _base;
+
+    /** Index of each character offset from _base, or -1 if absent.
+     *  Null when the alphabet is indexed by hash. */
+    private final int[] _dense;
+
+    /** Characters of the open-addressed hash table. */
+    private final char[] _keys;
+
+    /** Index of the character in the same slot of _keys, or -1. */
+    private final int[] _values;
+
+    /** Right shift mapping a hash product onto a slot of _keys. */
+    private final int _shift;
+
 }
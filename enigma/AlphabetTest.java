@@ -0,0 +1,64 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Alphabet class.
+ *  @author Fourth Teerakapibal
+ */
+public class AlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Check that ALPHA maps each character of CHARS to its index and
+     *  back, and rejects each character of ABSENT. */
+    private void checkAlphabet(Alphabet alpha, String chars, String absent) {
+        assertEquals(chars.length(), alpha.size());
+        for (int i = 0; i < chars.length(); i += 1) {
+            char c = chars.charAt(i);
+            assertTrue(msg("contains", "missing '%c'", c), alpha.contains(c));
+            assertEquals(msg("toInt", "wrong index of '%c'", c),
+                         i, alpha.toInt(c));
+            assertEquals(c, alpha.toChar(i));
+        }
+        for (int i = 0; i < absent.length(); i += 1) {
+            assertFalse(alpha.contains(absent.charAt(i)));
+        }
+    }
+
+    @Test
+    public void checkUpper() {
+        checkAlphabet(UPPER, UPPER_STRING, "az *()@[");
+    }
+
+    @Test
+    public void checkMixed() {
+        checkAlphabet(new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+                                   + "abcdefghijklmnopqrstuvwxyz_."),
+                      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz_.",
+                      "0 *()");
+    }
+
+    @Test
+    public void checkSparse() {
+        String sparse = "A\u00e9\u0416\u3042\u4e2d\uac00\uffe5";
+        checkAlphabet(new Alphabet(sparse), sparse, "B\u0417\u4e2e\uffff");
+    }
+
+    @Test
+    public void checkNotInAlphabet() {
+        try {
+            UPPER.toInt('a');
+            fail("toInt accepted a character outside the alphabet");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+}
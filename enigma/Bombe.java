@@ -0,0 +1,414 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static enigma.EnigmaException.*;
+
+/** A software Turing-Welchman Bombe.  Given a crib, a stretch of
+ *  plaintext known to occur at a given place in a message, it finds the
+ *  rotor orders and start positions under which some plugboard could
+ *  have produced the ciphertext.
+ *
+ *  The crib and ciphertext pair letters at each of its positions,
+ *  forming the menu: a graph on letters whose edges are labeled by
+ *  positions.  If the rotors at position J implement the involution S,
+ *  an edge between A and B there means that when A is steckered to X, B
+ *  is steckered to S(X).  For each rotor order and start position, the
+ *  most connected menu letter is hypothesized to be steckered to each
+ *  letter in turn, and every consequence is drawn, through the menu and
+ *  through the diagonal board (X steckered to Y implies Y steckered to
+ *  X), in a bit matrix of hypotheses.  A hypothesis that implies two
+ *  partners for one letter is false; one whose consequences are
+ *  consistent is a stop, reported with the steckers it implies.
+ *
+ *  Ring settings are taken to be A; they only decide where the rotors'
+ *  turnovers fall.  Each rotor order is tried by its own fork-join
+ *  task, with no Machine created per position.
+ *  @author Fourth Teerakapibal
+ */
+final class Bombe {
+
+    /** A Bombe for machines described by SPEC, looking for the crib
+     *  CRIB at keystroke OFFSET of CIPHERTEXT.  Whitespace in both is
+     *  ignored. */
+    Bombe(MachineSpec spec, String ciphertext, String crib, int offset) {
+        _spec = spec;
+        _size = spec.alphabet().size();
+        int[] cipher = encode(ciphertext);
+        _crib = encode(crib);
+        _offset = offset;
+        if (offset < 0 || offset + _crib.length > cipher.length) {
+            throw error("Crib does not fit in the message");
+        }
+        if (_crib.length == 0) {
+            throw error("Crib is empty");
+        }
+        _cipher = Arrays.copyOfRange(cipher, offset, offset + _crib.length);
+        for (int j = 0; j < _crib.length; j += 1) {
+            if (_crib[j] == _cipher[j]) {
+                throw error("Crib letter encrypts to itself at %d",
+                            offset + j);
+            }
+        }
+        _edges = new int[_size][];
+        int[] degree = new int[_size];
+        for (int j = 0; j < _crib.length; j += 1) {
+            degree[_crib[j]] += 1;
+            degree[_cipher[j]] += 1;
+        }
+        int test = 0;
+        for (int c = 0; c < _size; c += 1) {
+            _edges[c] = new int[degree[c]];
+            if (degree[c] > degree[test]) {
+                test = c;
+            }
+            degree[c] = 0;
+        }
+        for (int j = 0; j < _crib.length; j += 1) {
+            _edges[_crib[j]][degree[_crib[j]]++] = j;
+            _edges[_cipher[j]][degree[_cipher[j]]++] = j;
+        }
+        _test = test;
+        _orders = spec.rotorOrders();
+        _plugboard = new Permutation("", spec.alphabet());
+    }
+
+    /** Return the stops for every rotor order and start position,
+     *  running on the common fork-join pool. */
+    List<Stop> run() {
+        return run(ForkJoinPool.commonPool());
+    }
+
+    /** Return the stops for every rotor order and start position, in
+     *  the order of rotorOrders() and then of start positions, running
+     *  on POOL. */
+    List<Stop> run(ForkJoinPool pool) {
+        return pool.invoke(new Orders(0, _orders.size()));
+    }
+
+    /** A rotor order and start position consistent with the crib, with
+     *  the steckers implied there. */
+    static final class Stop {
+
+        /** A stop with the rotors named ROTORS, reflector first, at
+         *  start positions SETTING, implying the plugboard STECKERS,
+         *  given as cycles. */
+        Stop(String[] rotors, String setting, String steckers) {
+            _rotors = rotors;
+            _setting = setting;
+            _steckers = steckers;
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return my start positions, leftmost rotor first. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the pairs of letters implied to be steckered, as in
+         *  "(AB) (CD)".  Letters not mentioned may be unsteckered or
+         *  undetermined. */
+        String steckers() {
+            return _steckers;
+        }
+
+        /** Return the setting line selecting me, as for Main. */
+        @Override
+        public String toString() {
+            String line = "* " + String.join(" ", _rotors) + " " + _setting;
+            return _steckers.isEmpty() ? line : line + " " + _steckers;
+        }
+
+        /** Names of my rotors. */
+        private final String[] _rotors;
+        /** My start positions. */
+        private final String _setting;
+        /** Implied steckers. */
+        private final String _steckers;
+    }
+
+    /** Return the alphabet indices of the non-whitespace characters of
+     *  TEXT. */
+    private int[] encode(String text) {
+        Alphabet alpha = _spec.alphabet();
+        int[] result = new int[text.length()];
+        int n = 0;
+        for (int i = 0; i < text.length(); i += 1) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (!alpha.contains(c)) {
+                throw error("Message not in alphabet");
+            }
+            result[n] = alpha.toInt(c);
+            n += 1;
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Tries a range of rotor orders, each as a separate task. */
+    private class Orders extends RecursiveTask<List<Stop>> {
+
+        /** Try rotor orders LO .. HI-1. */
+        Orders(int lo, int hi) {
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected List<Stop> compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                Orders left = new Orders(_lo, mid);
+                left.fork();
+                List<Stop> right = new Orders(mid, _hi).compute();
+                List<Stop> stops = left.join();
+                stops.addAll(right);
+                return stops;
+            }
+            List<Stop> stops = new ArrayList<>();
+            if (_hi > _lo) {
+                new Tester(_orders.get(_lo)).run(stops);
+            }
+            return stops;
+        }
+
+        /** First rotor order of my range. */
+        private final int _lo;
+        /** End of my range of rotor orders. */
+        private final int _hi;
+    }
+
+    /** Tests every start position of one rotor order, with buffers
+     *  reused from one position to the next. */
+    private class Tester {
+
+        /** A tester for the rotors ORDER, reflector first. */
+        Tester(Rotor[] order) {
+            _order = order;
+            _cursor = _spec.newCursor();
+            _cursor.setPlugboard(_plugboard);
+            for (int idx = 0; idx < order.length; idx += 1) {
+                _cursor.setRotor(idx, order[idx]);
+            }
+            _at = new Cursor[_crib.length];
+            for (int j = 0; j < _crib.length; j += 1) {
+                _at[j] = _cursor.copy();
+            }
+            _words = (_size + Long.SIZE - 1) / Long.SIZE;
+            _lit = new long[_size * _words];
+            _partners = new int[_size];
+            _ruledOut = new boolean[_size];
+            _queue = new int[_size * _size];
+            _scrambled = new int[_crib.length * _size];
+            _stamp = new int[_crib.length * _size];
+        }
+
+        /** Add the stops at every start position of my rotor order to
+         *  STOPS. */
+        void run(List<Stop> stops) {
+            int slots = _order.length - 1;
+            int[] posn = new int[slots];
+            do {
+                for (int idx = 1; idx <= slots; idx += 1) {
+                    _cursor.setSetting(idx, posn[idx - 1]);
+                }
+                _spec.skip(_cursor, _offset);
+                for (int j = 0; j < _crib.length; j += 1) {
+                    _spec.step(_cursor);
+                    _at[j].setTo(_cursor);
+                }
+                _epoch += 1;
+                Arrays.fill(_ruledOut, false);
+                for (int guess = 0; guess < _size; guess += 1) {
+                    if (_ruledOut[guess]) {
+                        continue;
+                    }
+                    if (close(_test, guess)) {
+                        stops.add(stop(posn));
+                    } else {
+                        ruleOut();
+                    }
+                    clear();
+                }
+            } while (next(posn));
+        }
+
+        /** Draw all consequences of the hypothesis that A is steckered
+         *  to B, and return true iff they are consistent.  The
+         *  hypotheses drawn are left in _lit and _queue. */
+        private boolean close(int a, int b) {
+            _tail = 0;
+            if (!light(a, b)) {
+                return false;
+            }
+            for (int head = 0; head < _tail; head += 1) {
+                int x = _queue[head] / _size, y = _queue[head] % _size;
+                if (!light(y, x)) {
+                    return false;
+                }
+                for (int j : _edges[x]) {
+                    int z = _crib[j] == x ? _cipher[j] : _crib[j];
+                    if (!light(z, scramble(j, y))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** Record the hypothesis that X is steckered to Y, if it is new,
+         *  and return false iff X then has two partners. */
+        private boolean light(int x, int y) {
+            int word = x * _words + y / Long.SIZE;
+            long bit = 1L << (y % Long.SIZE);
+            if ((_lit[word] & bit) != 0) {
+                return true;
+            }
+            _lit[word] |= bit;
+            _queue[_tail] = x * _size + y;
+            _tail += 1;
+            _partners[x] += 1;
+            return _partners[x] == 1;
+        }
+
+        /** Mark as false every partner of the test letter hypothesized in
+         *  an inconsistent closure: each implies the hypothesis that
+         *  began it, and so is just as false. */
+        private void ruleOut() {
+            for (int k = 0; k < _tail; k += 1) {
+                if (_queue[k] / _size == _test) {
+                    _ruledOut[_queue[k] % _size] = true;
+                }
+            }
+        }
+
+        /** Forget all hypotheses. */
+        private void clear() {
+            for (int k = 0; k < _tail; k += 1) {
+                int x = _queue[k] / _size, y = _queue[k] % _size;
+                _lit[x * _words + y / Long.SIZE] = 0;
+                _partners[x] = 0;
+            }
+        }
+
+        /** Return the image of C under the rotors at crib position J,
+         *  computing it only once per start position. */
+        private int scramble(int j, int c) {
+            int k = j * _size + c;
+            if (_stamp[k] != _epoch) {
+                _stamp[k] = _epoch;
+                _scrambled[k] = _spec.path(_at[j], c);
+            }
+            return _scrambled[k];
+        }
+
+        /** Return the stop at start positions POSN, whose steckers are
+         *  in _queue. */
+        private Stop stop(int[] posn) {
+            Alphabet alpha = _spec.alphabet();
+            String[] names = new String[_order.length];
+            for (int idx = 0; idx < _order.length; idx += 1) {
+                names[idx] = _order[idx].name();
+            }
+            char[] setting = new char[posn.length];
+            for (int k = 0; k < posn.length; k += 1) {
+                setting[k] = alpha.toChar(posn[k]);
+            }
+            int[] partner = new int[_size];
+            Arrays.fill(partner, -1);
+            for (int k = 0; k < _tail; k += 1) {
+                partner[_queue[k] / _size] = _queue[k] % _size;
+            }
+            StringBuilder steckers = new StringBuilder();
+            for (int x = 0; x < _size; x += 1) {
+                if (partner[x] > x) {
+                    if (steckers.length() > 0) {
+                        steckers.append(' ');
+                    }
+                    steckers.append('(').append(alpha.toChar(x))
+                        .append(alpha.toChar(partner[x])).append(')');
+                }
+            }
+            return new Stop(names, new String(setting),
+                            steckers.toString());
+        }
+
+        /** Advance POSN to the next start position, rightmost rotor
+         *  fastest, returning false after the last. */
+        private boolean next(int[] posn) {
+            for (int k = posn.length - 1; k >= 0; k -= 1) {
+                posn[k] += 1;
+                if (posn[k] < _size) {
+                    return true;
+                }
+                posn[k] = 0;
+            }
+            return false;
+        }
+
+        /** My rotors, reflector first. */
+        private final Rotor[] _order;
+        /** My rotors at the start position being tested. */
+        private final Cursor _cursor;
+        /** My rotors at each crib position. */
+        private final Cursor[] _at;
+        /** Words of _lit per letter. */
+        private final int _words;
+        /** Bit Y of row X is set iff X is hypothesized steckered to Y. */
+        private final long[] _lit;
+        /** Number of partners hypothesized for each letter. */
+        private final int[] _partners;
+        /** Partners of the test letter known to be false at the current
+         *  start position. */
+        private final boolean[] _ruledOut;
+        /** Hypotheses drawn, as X * alphabet size + Y, in order. */
+        private final int[] _queue;
+        /** Number of hypotheses in _queue. */
+        private int _tail;
+        /** Memo of scramble(). */
+        private final int[] _scrambled;
+        /** Epoch at which each entry of _scrambled was computed. */
+        private final int[] _stamp;
+        /** Number of start positions tested. */
+        private int _epoch;
+    }
+
+    /** Description of the machines searched. */
+    private final MachineSpec _spec;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** The crib, as alphabet indices. */
+    private final int[] _crib;
+
+    /** The ciphertext under the crib, as alphabet indices. */
+    private final int[] _cipher;
+
+    /** Keystroke of the message at which the crib starts. */
+    private final int _offset;
+
+    /** For each letter, the crib positions at which it is on the
+     *  menu. */
+    private final int[][] _edges;
+
+    /** Menu letter whose partners are hypothesized. */
+    private final int _test;
+
+    /** Every rotor order tried. */
+    private final List<Rotor[]> _orders;
+
+    /** The empty plugboard under which the rotors are traced. */
+    private final Permutation _plugboard;
+
+}
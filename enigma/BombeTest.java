@@ -0,0 +1,77 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests of the Bombe.
+ *  @author Fourth Teerakapibal
+ */
+public class BombeTest {
+
+    /** A message whose start serves as a crib. */
+    private static final String PLAINTEXT =
+        "WEATHERREPORTFORTHENORTHSEAFOLLOWSCLEARSKIESANDLIGHTWINDS";
+
+    /** The plugboard used to encrypt it. */
+    private static final String PLUGBOARD = "(AQ) (BY) (EX) (HK) (IP) (RT)";
+
+    /** Return a spec for a four-slot machine with three pawls and the
+     *  naval rotors B, I, II and III. */
+    private MachineSpec spec() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (Rotor rotor : TestUtils.initRotor()) {
+            if (List.of("B", "I", "II", "III").contains(rotor.name())) {
+                rotors.add(rotor);
+            }
+        }
+        return new MachineSpec(new Alphabet(), 4, 3, rotors);
+    }
+
+    /** Return PLAINTEXT encrypted with rotors B II III I at setting
+     *  KTZ. */
+    private String ciphertext(MachineSpec spec) {
+        Machine machine = new Machine(spec);
+        machine.insertRotors(new String[]{"B", "II", "III", "I"});
+        machine.setRotors("KTZ", "AAA");
+        machine.setPlugboard(new Permutation(PLUGBOARD, new Alphabet()));
+        return machine.convert(PLAINTEXT);
+    }
+
+    @Test
+    public void findsStop() {
+        MachineSpec spec = spec();
+        String ciphertext = ciphertext(spec);
+        Bombe bombe = new Bombe(spec, ciphertext,
+                                PLAINTEXT.substring(2, 26), 2);
+        Bombe.Stop found = null;
+        List<Bombe.Stop> stops = bombe.run();
+        for (Bombe.Stop stop : stops) {
+            if (stop.toString().startsWith("* B II III I KTZ")) {
+                found = stop;
+            }
+        }
+        assertTrue("true key not among stops", found != null);
+        assertTrue(stops.size() < 100);
+        assertFalse(found.steckers().isEmpty());
+        for (String pair : found.steckers().split(" ")) {
+            assertTrue(pair, PLUGBOARD.contains(pair));
+        }
+    }
+
+    @Test
+    public void rejectsSelfEncryption() {
+        MachineSpec spec = spec();
+        String ciphertext = ciphertext(spec);
+        String crib = ciphertext.substring(0, 1) + "Q";
+        try {
+            new Bombe(spec, ciphertext, crib, 0);
+            fail("no error for letter encrypting to itself");
+        } catch (EnigmaException excp) {
+            return;
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import static enigma.EnigmaException.*;
+
+/** A source of input lines that are delivered in pieces of bounded size,
+ *  so that neither a long line nor a large file need be held in memory.
+ *  Files are memory-mapped a window at a time; other streams are read
+ *  through a fixed buffer.  Lines end at "\n", "\r\n", or "\r".
+ *  @author Fourth Teerakapibal
+ */
+class ChunkedInput {
+
+    /** Input read from the file named NAME. */
+    ChunkedInput(String name) {
+        try {
+            _file = new RandomAccessFile(new File(name), "r").getChannel();
+            _fileSize = _file.size();
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+        _stream = null;
+        _bytes = ByteBuffer.allocate(0);
+        _decoder = newDecoder();
+        _chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+        _chars.flip();
+    }
+
+    /** Input read from IN. */
+    ChunkedInput(InputStream in) {
+        _file = null;
+        _stream = Channels.newChannel(in);
+        _bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+        _bytes.flip();
+        _decoder = newDecoder();
+        _chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+        _chars.flip();
+    }
+
+    /** Return true iff there is another line, possibly empty, to read. */
+    boolean hasNextLine() {
+        return fill();
+    }
+
+    /** Copy characters of the current line into DST, up to DST.length
+     *  of them, stopping before its line terminator, and return how many
+     *  were copied.  When the whole remainder of the line has been
+     *  copied, its terminator is consumed and atLineEnd() becomes true;
+     *  the next call then starts a new line. */
+    int readLinePart(char[] dst) {
+        _atLineEnd = false;
+        int n = 0;
+        while (n < dst.length) {
+            if (!fill()) {
+                _atLineEnd = true;
+                break;
+            }
+            char c = _chars.get();
+            if (c == '\n') {
+                _atLineEnd = true;
+                break;
+            } else if (c == '\r') {
+                if (fill() && _chars.get(_chars.position()) == '\n') {
+                    _chars.get();
+                }
+                _atLineEnd = true;
+                break;
+            }
+            dst[n] = c;
+            n += 1;
+        }
+        if (n == dst.length && !_atLineEnd) {
+            skipTerminator();
+        }
+        return n;
+    }
+
+    /** Return the rest of the current line, which must be of modest
+     *  length, as a string, consuming its terminator. */
+    String readRestOfLine(char[] scratch, int n) {
+        StringBuilder line = new StringBuilder();
+        line.append(scratch, 0, n);
+        while (!_atLineEnd) {
+            int k = readLinePart(scratch);
+            line.append(scratch, 0, k);
+        }
+        return line.toString();
+    }
+
+    /** Return true iff the last call to readLinePart reached the end of
+     *  its line. */
+    boolean atLineEnd() {
+        return _atLineEnd;
+    }
+
+    /** Release any file resources. */
+    void close() {
+        try {
+            if (_file != null) {
+                _file.close();
+            } else {
+                _stream.close();
+            }
+        } catch (IOException excp) {
+            throw error("could not close input");
+        }
+    }
+
+    /** If the next pending character is a line terminator, consume it
+     *  so that a line exactly filling a buffer ends in that call. */
+    private void skipTerminator() {
+        if (!fill()) {
+            _atLineEnd = true;
+            return;
+        }
+        char c = _chars.get(_chars.position());
+        if (c == '\n') {
+            _chars.get();
+            _atLineEnd = true;
+        } else if (c == '\r') {
+            _chars.get();
+            if (fill() && _chars.get(_chars.position()) == '\n') {
+                _chars.get();
+            }
+            _atLineEnd = true;
+        }
+    }
+
+    /** Make at least one decoded character available in _chars, if any
+     *  remain.  Return false at end of input. */
+    private boolean fill() {
+        while (!_chars.hasRemaining()) {
+            if (_eof) {
+                return false;
+            }
+            _chars.clear();
+            _decoder.decode(_bytes, _chars, false);
+            if (_chars.position() == 0 && !fillBytes()) {
+                _decoder.decode(_bytes, _chars, true);
+                _decoder.flush(_chars);
+                _eof = true;
+            }
+            _chars.flip();
+        }
+        return true;
+    }
+
+    /** Make more undecoded bytes available in _bytes, keeping any that
+     *  remain undecoded.  Return false if there are no more to read. */
+    private boolean fillBytes() {
+        try {
+            if (_file != null) {
+                long start = _mapStart + _bytes.position();
+                if (start >= _fileSize) {
+                    return false;
+                }
+                long size = Math.min(MAP_WINDOW, _fileSize - start);
+                _bytes = _file.map(FileChannel.MapMode.READ_ONLY, start, size);
+                _mapStart = start;
+                return true;
+            }
+            _bytes.compact();
+            int k = _stream.read(_bytes);
+            _bytes.flip();
+            return k >= 0;
+        } catch (IOException excp) {
+            throw error("could not read input");
+        }
+    }
+
+    /** Return a decoder for the platform character set that replaces
+     *  malformed input, as Scanner does. */
+    private static CharsetDecoder newDecoder() {
+        return Charset.defaultCharset().newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /** Bytes of a file mapped at once. */
+    private static final long MAP_WINDOW = 1 << 24;
+
+    /** Size of the read buffer for non-file input. */
+    private static final int BYTE_BUFFER_SIZE = 1 << 16;
+
+    /** Size of the decoded character buffer. */
+    private static final int CHAR_BUFFER_SIZE = 1 << 13;
+
+    /** Input file, or null if reading a stream. */
+    private final FileChannel _file;
+
+    /** Total size of _file. */
+    private long _fileSize;
+
+    /** File offset of the start of _bytes when mapped. */
+    private long _mapStart;
+
+    /** Input stream, or null if reading a file. */
+    private final ReadableByteChannel _stream;
+
+    /** Undecoded input: a mapped window of _file, or a read buffer. */
+    private ByteBuffer _bytes;
+
+    /** Decoder from _bytes to _chars. */
+    private final CharsetDecoder _decoder;
+
+    /** Decoded characters not yet consumed. */
+    private final CharBuffer _chars;
+
+    /** True once all input has been decoded. */
+    private boolean _eof;
+
+    /** True iff the last readLinePart ended its line. */
+    private boolean _atLineEnd;
+
+}
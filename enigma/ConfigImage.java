@@ -0,0 +1,203 @@
+package enigma;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import static enigma.EnigmaException.*;
+
+/** A machine configuration compiled to a binary image, which is loaded
+ *  by memory-mapping it and copying out its tables, with no text to
+ *  parse and no cycles to rebuild.
+ *
+ *  An image is a sequence of big-endian values: the int MAGIC, the int
+ *  VERSION, the alphabet size N and the N characters of the alphabet,
+ *  the numbers of slots and pawls and the number of rotors, and then
+ *  for each rotor, in the order of the configuration file: its kind
+ *  (FIXED, MOVING or REFLECTOR, a byte), the length of its name and the
+ *  characters of the name, its forward and inverse tables (N chars
+ *  each), and, for a moving rotor, its notch mask (N bytes, 1 at each
+ *  setting that is a notch).
+ *  @author Fourth Teerakapibal
+ */
+final class ConfigImage {
+
+    /** Not instantiable. */
+    private ConfigImage() {
+    }
+
+    /** Write the configuration SPEC as an image to the file named
+     *  NAME. */
+    static void write(MachineSpec spec, String name) {
+        Alphabet alpha = spec.alphabet();
+        RotorRegistry rotors = spec.registry();
+        int n = alpha.size();
+        int size = 6 * Integer.BYTES + Character.BYTES * n;
+        for (int k = 0; k < rotors.size(); k += 1) {
+            size += 1 + Integer.BYTES
+                + Character.BYTES * (rotors.get(k).name().length() + 2 * n)
+                + (rotors.get(k).rotates() ? n : 0);
+        }
+        ByteBuffer image = ByteBuffer.allocate(size);
+        image.putInt(MAGIC).putInt(VERSION).putInt(n);
+        for (int i = 0; i < n; i += 1) {
+            image.putChar(alpha.toChar(i));
+        }
+        image.putInt(spec.numRotors()).putInt(spec.numPawls())
+            .putInt(rotors.size());
+        for (int k = 0; k < rotors.size(); k += 1) {
+            Rotor rotor = rotors.get(k);
+            Permutation perm = rotor.permutation();
+            image.put(rotor.reflecting() ? REFLECTOR
+                      : rotor.rotates() ? MOVING : FIXED);
+            image.putInt(rotor.name().length());
+            for (int i = 0; i < rotor.name().length(); i += 1) {
+                image.putChar(rotor.name().charAt(i));
+            }
+            for (int i = 0; i < n; i += 1) {
+                image.putChar((char) perm.permute(i));
+            }
+            for (int i = 0; i < n; i += 1) {
+                image.putChar((char) perm.invert(i));
+            }
+            if (rotor.rotates()) {
+                for (int i = 0; i < n; i += 1) {
+                    image.put((byte) (rotor.atNotch(i) ? 1 : 0));
+                }
+            }
+        }
+        image.flip();
+        try (FileOutputStream out = new FileOutputStream(name)) {
+            FileChannel channel = out.getChannel();
+            while (image.hasRemaining()) {
+                channel.write(image);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", name);
+        }
+    }
+
+    /** Return true iff the file named NAME begins as an image does. */
+    static boolean isImage(String name) {
+        try (RandomAccessFile file = new RandomAccessFile(name, "r")) {
+            return file.length() >= Integer.BYTES && file.readInt() == MAGIC;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Return the configuration in the image file named NAME. */
+    static MachineSpec read(String name) {
+        ByteBuffer image;
+        try (FileChannel file =
+             new RandomAccessFile(new File(name), "r").getChannel()) {
+            image = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+        try {
+            return read(image);
+        } catch (BufferUnderflowException excp) {
+            throw error("compiled configuration truncated");
+        }
+    }
+
+    /** Return the configuration in IMAGE, checking its numbers of
+     *  slots and pawls as for a text configuration, and that each
+     *  rotor's two tables are inverse permutations. */
+    private static MachineSpec read(ByteBuffer image) {
+        if (image.getInt() != MAGIC) {
+            throw error("not a compiled configuration");
+        }
+        int version = image.getInt();
+        if (version != VERSION) {
+            throw error("unsupported configuration version %d", version);
+        }
+        int n = image.getInt();
+        Alphabet alpha = new Alphabet(new String(chars(image, n)));
+        int numRotors = image.getInt(), numPawls = image.getInt();
+        if (numRotors <= numPawls || numPawls < 0) {
+            throw error("Need Number of rotors > Number of pawls >= 0");
+        }
+        int count = image.getInt();
+        if (count < 0) {
+            throw error("bad table in compiled configuration");
+        }
+        ArrayList<Rotor> rotors = new ArrayList<>(count);
+        for (int k = 0; k < count; k += 1) {
+            byte kind = image.get();
+            String rotorName = new String(chars(image, image.getInt()));
+            int[] forward = table(image, n), inverse = table(image, n);
+            for (int i = 0; i < n; i += 1) {
+                if (inverse[forward[i]] != i) {
+                    throw error("bad table in compiled configuration");
+                }
+            }
+            Permutation perm = new Permutation(alpha, forward, inverse);
+            if (kind == MOVING) {
+                boolean[] notchAt = new boolean[n];
+                for (int i = 0; i < n; i += 1) {
+                    notchAt[i] = image.get() != 0;
+                }
+                rotors.add(new MovingRotor(rotorName, perm, notchAt));
+            } else if (kind == FIXED) {
+                rotors.add(new FixedRotor(rotorName, perm));
+            } else if (kind == REFLECTOR) {
+                rotors.add(new Reflector(rotorName, perm));
+            } else {
+                throw error("bad rotor kind in compiled configuration");
+            }
+        }
+        return new MachineSpec(alpha, numRotors, numPawls,
+                               new RotorRegistry(rotors));
+    }
+
+    /** Return the next LEN characters of IMAGE. */
+    private static char[] chars(ByteBuffer image, int len) {
+        if (len < 0 || len > image.remaining() / Character.BYTES) {
+            throw error("compiled configuration truncated");
+        }
+        char[] result = new char[len];
+        CharBuffer view = image.asCharBuffer();
+        view.get(result);
+        image.position(image.position() + Character.BYTES * len);
+        return result;
+    }
+
+    /** Return the next table of N indices, below N, in IMAGE. */
+    private static int[] table(ByteBuffer image, int n) {
+        char[] entries = chars(image, n);
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = entries[i];
+            if (result[i] >= n) {
+                throw error("bad table in compiled configuration");
+            }
+        }
+        return result;
+    }
+
+    /** First int of every image: the byte 0x89 and then "ENG".  The
+     *  first byte is not printable ASCII and cannot begin a character
+     *  in UTF-8, so no text configuration file begins this way. */
+    static final int MAGIC = 0x89454E47;
+
+    /** Version of the image format written. */
+    static final int VERSION = 1;
+
+    /** Kind of a fixed rotor. */
+    private static final byte FIXED = 0;
+
+    /** Kind of a moving rotor. */
+    private static final byte MOVING = 1;
+
+    /** Kind of a reflector. */
+    private static final byte REFLECTOR = 2;
+
+}
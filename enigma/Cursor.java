@@ -0,0 +1,180 @@
+package enigma;
+
+/** The state of one machine built from a MachineSpec: the rotors in its
+ *  slots, their settings and ring offsets, and its plugboard.  The
+ *  rotors themselves are shared and never moved; only the numbers held
+ *  here change, so any number of cursors may use one spec at once, each
+ *  confined to one thread at a time.
+ *  @author Fourth Teerakapibal
+ */
+final class Cursor {
+
+    /** A cursor for a machine with NUMROTORS slots, initially empty. */
+    Cursor(int numRotors) {
+        _rotors = new Rotor[numRotors];
+        _rotating = new boolean[numRotors];
+        _settings = new int[numRotors];
+        _offsets = new int[numRotors];
+        _rows = new int[numRotors];
+        _moves = new boolean[numRotors];
+    }
+
+    /** A cursor in the same state as CURSOR. */
+    private Cursor(Cursor cursor) {
+        _rotors = cursor._rotors.clone();
+        _rotating = cursor._rotating.clone();
+        _settings = cursor._settings.clone();
+        _offsets = cursor._offsets.clone();
+        _rows = cursor._rows.clone();
+        _moves = new boolean[_rotors.length];
+        _plugboard = cursor._plugboard;
+    }
+
+    /** Return a copy of me that changes independently of me. */
+    Cursor copy() {
+        return new Cursor(this);
+    }
+
+    /** Put me in the same state as CURSOR, a cursor with as many slots
+     *  as mine. */
+    void setTo(Cursor cursor) {
+        System.arraycopy(cursor._rotors, 0, _rotors, 0, _rotors.length);
+        System.arraycopy(cursor._rotating, 0, _rotating, 0,
+                         _rotating.length);
+        System.arraycopy(cursor._settings, 0, _settings, 0,
+                         _settings.length);
+        System.arraycopy(cursor._offsets, 0, _offsets, 0, _offsets.length);
+        System.arraycopy(cursor._rows, 0, _rows, 0, _rows.length);
+        _plugboard = cursor._plugboard;
+    }
+
+    /** Return the number of slots I have. */
+    int numRotors() {
+        return _rotors.length;
+    }
+
+    /** Return the rotor in slot SLOT, or null if none. */
+    Rotor rotor(int slot) {
+        return _rotors[slot];
+    }
+
+    /** Return true iff the rotor in slot SLOT rotates. */
+    boolean rotating(int slot) {
+        return _rotating[slot];
+    }
+
+    /** Put ROTOR in slot SLOT, at setting 0 and offset 0. */
+    void setRotor(int slot, Rotor rotor) {
+        _rotors[slot] = rotor;
+        _rotating[slot] = rotor.rotates();
+        _settings[slot] = 0;
+        _offsets[slot] = 0;
+        _rows[slot] = 0;
+    }
+
+    /** Return the setting of the rotor in slot SLOT. */
+    int setting(int slot) {
+        return _settings[slot];
+    }
+
+    /** Set the rotor in slot SLOT to setting POSN. */
+    void setSetting(int slot, int posn) {
+        _settings[slot] = posn;
+        _rows[slot] = _rotors[slot].row(posn, _offsets[slot]);
+    }
+
+    /** Return the ring offset of the rotor in slot SLOT. */
+    int offset(int slot) {
+        return _offsets[slot];
+    }
+
+    /** Set the ring offset of the rotor in slot SLOT to OFFSET. */
+    void setOffset(int slot, int offset) {
+        _offsets[slot] = offset;
+        _rows[slot] = _rotors[slot].row(_settings[slot], offset);
+    }
+
+    /** Return the wiring table row of the rotor in slot SLOT. */
+    int row(int slot) {
+        return _rows[slot];
+    }
+
+    /** Advance the rotor in slot SLOT one position. */
+    void advance(int slot) {
+        _advances += 1;
+        int size = _rotors[slot].size();
+        _settings[slot] += 1;
+        _rows[slot] += size;
+        if (_settings[slot] == size) {
+            _settings[slot] = 0;
+        }
+        if (_rows[slot] == size * size) {
+            _rows[slot] = 0;
+        }
+    }
+
+    /** Record that a rotor moved on its own notch: a double step. */
+    void countDoubleStep() {
+        _doubleSteps += 1;
+    }
+
+    /** Return the number of rotor advances since the last call, and
+     *  start counting afresh. */
+    long takeAdvances() {
+        long advances = _advances;
+        _advances = 0;
+        return advances;
+    }
+
+    /** Return the number of double steps since the last call, and start
+     *  counting afresh. */
+    long takeDoubleSteps() {
+        long doubleSteps = _doubleSteps;
+        _doubleSteps = 0;
+        return doubleSteps;
+    }
+
+    /** Return my plugboard. */
+    Permutation plugboard() {
+        return _plugboard;
+    }
+
+    /** Set my plugboard to PLUGBOARD. */
+    void setPlugboard(Permutation plugboard) {
+        _plugboard = plugboard;
+    }
+
+    /** Return scratch space recording which slots move on a keystroke. */
+    boolean[] moves() {
+        return _moves;
+    }
+
+    /** The rotor in each slot, reflector first. */
+    private final Rotor[] _rotors;
+
+    /** Whether the rotor in each slot rotates. */
+    private final boolean[] _rotating;
+
+    /** Setting of the rotor in each slot. */
+    private final int[] _settings;
+
+    /** Ring offset of the rotor in each slot. */
+    private final int[] _offsets;
+
+    /** Wiring table row of the rotor in each slot, for its setting and
+     *  offset. */
+    private final int[] _rows;
+
+    /** Scratch record of which slots move on the current keystroke. */
+    private final boolean[] _moves;
+
+    /** Plugboard. */
+    private Permutation _plugboard;
+
+    /** Number of rotor advances not yet taken. */
+    private long _advances;
+
+    /** Number of double steps not yet taken. */
+    private long _doubleSteps;
+
+}
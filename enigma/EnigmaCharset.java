@@ -0,0 +1,194 @@
+package enigma;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A character set whose encoders encipher text with a Machine before
+ *  encoding it in another character set, and whose decoders decode text
+ *  from that character set and then decipher it, so that the emulator
+ *  can be dropped into anything that takes a Charset, such as an
+ *  InputStreamReader or Files.newBufferedWriter.  Every encoder and
+ *  decoder starts, and restarts on reset, with a copy of the machine
+ *  in the state it was in when the character set was made.  Text is
+ *  converted as by Machine.filter, incrementally as it flows through,
+ *  in buffers allocated once per coder.  This character set is not
+ *  registered with a CharsetProvider, since each instance stands for
+ *  one key, and each has a distinct name, so that no two are equal.
+ *  @author Fourth Teerakapibal
+ */
+final class EnigmaCharset extends Charset {
+
+    /** A character set converting with copies of MACHINE, as it is now,
+     *  and encoded in BASE. */
+    EnigmaCharset(Machine machine, Charset base) {
+        super(PREFIX + COUNT.incrementAndGet(), null);
+        _machine = machine.copy();
+        _base = base;
+    }
+
+    @Override
+    public boolean contains(Charset cs) {
+        return cs == this;
+    }
+
+    @Override
+    public CharsetDecoder newDecoder() {
+        return new Decoder();
+    }
+
+    @Override
+    public CharsetEncoder newEncoder() {
+        return new Encoder();
+    }
+
+    /** Convert BUF[FROM .. TO-1] in place with MACHINE. */
+    private static void convert(Machine machine, CharBuffer buf, int from,
+                                int to) {
+        if (buf.hasArray()) {
+            int off = buf.arrayOffset();
+            machine.filter(buf.array(), off + from, buf.array(), off + from,
+                           to - from);
+        } else {
+            for (int i = from; i < to; i += 1) {
+                buf.put(i, machine.filter(buf.get(i)));
+            }
+        }
+    }
+
+    /** Decodes bytes in my base character set, then deciphers them. */
+    private class Decoder extends CharsetDecoder {
+
+        /** A decoder starting with my machine. */
+        Decoder() {
+            super(EnigmaCharset.this, _base.newDecoder().averageCharsPerByte(),
+                  _base.newDecoder().maxCharsPerByte());
+            _decoder = _base.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+            _converter = _machine.copy();
+        }
+
+        @Override
+        protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
+            int start = out.position();
+            CoderResult result = _decoder.decode(in, out, false);
+            convert(_converter, out, start, out.position());
+            return result;
+        }
+
+        @Override
+        protected CoderResult implFlush(CharBuffer out) {
+            int start = out.position();
+            CoderResult result = _decoder.decode(EMPTY, out, true);
+            if (!result.isOverflow()) {
+                result = _decoder.flush(out);
+            }
+            convert(_converter, out, start, out.position());
+            return result;
+        }
+
+        @Override
+        protected void implReset() {
+            _decoder.reset();
+            _converter = _machine.copy();
+        }
+
+        /** Decoder of my base character set. */
+        private final CharsetDecoder _decoder;
+
+        /** Machine deciphering my output. */
+        private Machine _converter;
+    }
+
+    /** Enciphers text, then encodes it in my base character set. */
+    private class Encoder extends CharsetEncoder {
+
+        /** An encoder starting with my machine. */
+        Encoder() {
+            super(EnigmaCharset.this, _base.newEncoder().averageBytesPerChar(),
+                  _base.newEncoder().maxBytesPerChar(),
+                  _base.newEncoder().replacement());
+            _encoder = _base.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            _converter = _machine.copy();
+            _pending.flip();
+        }
+
+        /** Encipher characters from IN into _pending, and encode them
+         *  into OUT, until IN is exhausted or OUT is full.  Characters
+         *  are taken from IN as soon as they are enciphered; those the
+         *  base encoder cannot yet take wait in _pending. */
+        @Override
+        protected CoderResult encodeLoop(CharBuffer in, ByteBuffer out) {
+            while (true) {
+                CoderResult result = _encoder.encode(_pending, out, false);
+                if (result.isOverflow() || !in.hasRemaining()) {
+                    return result;
+                }
+                _pending.compact();
+                int start = _pending.position();
+                int k = Math.min(in.remaining(), _pending.remaining());
+                int limit = in.limit();
+                in.limit(in.position() + k);
+                _pending.put(in);
+                in.limit(limit);
+                convert(_converter, _pending, start, start + k);
+                _pending.flip();
+            }
+        }
+
+        @Override
+        protected CoderResult implFlush(ByteBuffer out) {
+            CoderResult result = _encoder.encode(_pending, out, true);
+            if (result.isOverflow()) {
+                return result;
+            }
+            return _encoder.flush(out);
+        }
+
+        @Override
+        protected void implReset() {
+            _encoder.reset();
+            _pending.clear();
+            _pending.flip();
+            _converter = _machine.copy();
+        }
+
+        /** Encoder of my base character set. */
+        private final CharsetEncoder _encoder;
+
+        /** Machine enciphering my input. */
+        private Machine _converter;
+
+        /** Enciphered characters not yet encoded. */
+        private final CharBuffer _pending = CharBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /** Start of the name of every instance.  Charsets are equal iff
+     *  their names are, so each instance's name ends with a number of
+     *  its own. */
+    private static final String PREFIX = "x-enigma-";
+
+    /** Number of instances made. */
+    private static final AtomicLong COUNT = new AtomicLong();
+
+    /** Size of each encoder's buffer of enciphered characters. */
+    private static final int BUFFER_SIZE = 1 << 12;
+
+    /** An empty buffer, with which the end of input is decoded. */
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    /** The machine copied by each coder, in its starting state. */
+    private final Machine _machine;
+
+    /** Character set in which enciphered text is encoded. */
+    private final Charset _base;
+
+}
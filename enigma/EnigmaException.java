@@ -9,7 +9,20 @@ class EnigmaException extends RuntimeException {
 
     /** An exception whose getMessage() value is MSG. */
     EnigmaException(String msg) {
+        this(msg, msg);
+    }
+
+    /** An exception whose getMessage() value is MSG, reporting an error
+     *  of kind KIND. */
+    EnigmaException(String msg, String kind) {
         super(msg);
+        _kind = kind;
+    }
+
+    /** Return the kind of error I report: the message, before any
+     *  arguments were formatted into it. */
+    String kind() {
+        return _kind;
     }
 
     /** A utility method that returns a new exception with a message
@@ -20,7 +33,11 @@ class EnigmaException extends RuntimeException {
      *  execution will terminate at that point, and avoid insistance on
      *  an explicit return in a value-returning function.)  */
     static EnigmaException error(String msgFormat, Object... arguments) {
-        return new EnigmaException(String.format(msgFormat, arguments));
+        return new EnigmaException(String.format(msgFormat, arguments),
+                                   msgFormat);
     }
 
+    /** The kind of error reported. */
+    private final String _kind;
+
 }
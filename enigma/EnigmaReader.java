@@ -0,0 +1,82 @@
+package enigma;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/** A Reader that converts the text of another with a Machine as it is
+ *  read, so that a message of any length is enciphered or deciphered in
+ *  constant memory.  Characters are converted as by Machine.filter:
+ *  those in the machine's alphabet are converted and all others are
+ *  passed through.  Skipping characters converts them, so that the
+ *  machine stays in step with the text; marks are not supported.
+ *  @author Fourth Teerakapibal
+ */
+final class EnigmaReader extends FilterReader {
+
+    /** A reader converting the text of IN with MACHINE, which it
+     *  advances. */
+    EnigmaReader(Reader in, Machine machine) {
+        super(in);
+        _machine = machine;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int c = in.read();
+        return c < 0 ? c : _machine.filter((char) c);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        int n = in.read(cbuf, off, len);
+        if (n > 0) {
+            _machine.filter(cbuf, off, cbuf, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n < 0) {
+            throw new IllegalArgumentException("skip value is negative");
+        }
+        if (_skipped == null) {
+            _skipped = new char[SKIP_BUFFER_SIZE];
+        }
+        long left = n;
+        while (left > 0) {
+            int k = read(_skipped, 0, (int) Math.min(left, _skipped.length));
+            if (k < 0) {
+                break;
+            }
+            left -= k;
+        }
+        return n - left;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset not supported");
+    }
+
+    /** Size of the buffer into which skipped characters are read. */
+    private static final int SKIP_BUFFER_SIZE = 1 << 10;
+
+    /** Machine converting my text. */
+    private final Machine _machine;
+
+    /** Buffer for skipped characters, or null until needed. */
+    private char[] _skipped;
+
+}
@@ -0,0 +1,92 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/** Tests of EnigmaReader, EnigmaWriter and EnigmaCharset.
+ *  @author Fourth Teerakapibal
+ */
+public class EnigmaStreamsTest {
+
+    /** Running text, with characters outside the alphabet. */
+    private static final String PLAINTEXT =
+        "FROM HIS SHOULDER\nHIAWATHA!";
+
+    /** PLAINTEXT as converted by machine(). */
+    private static final String CIPHERTEXT =
+        "QVPQ SOK OILPUBKJ\nZPISFXDW!";
+
+    /** Return a machine at the start of the key used for CIPHERTEXT. */
+    private Machine machine() {
+        Machine m = new Machine(new Alphabet(), 5, 3,
+                                TestUtils.initRotor());
+        m.insertRotors(new String[]{"B", "Beta", "III", "IV", "I"});
+        m.setRotors("AXLE", "AAAA");
+        m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                new Alphabet()));
+        return m;
+    }
+
+    /** Return everything read from IN, a few characters at a time. */
+    private String readAll(Reader in) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] buf = new char[3];
+        int c = in.read();
+        while (c >= 0) {
+            text.append((char) c);
+            int n = in.read(buf, 0, buf.length);
+            if (n < 0) {
+                break;
+            }
+            text.append(buf, 0, n);
+            c = in.read();
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void reader() throws IOException {
+        Reader in = new EnigmaReader(new StringReader(PLAINTEXT), machine());
+        assertEquals(CIPHERTEXT, readAll(in));
+
+        in = new EnigmaReader(new StringReader(PLAINTEXT), machine());
+        assertEquals(5, in.skip(5));
+        assertEquals(CIPHERTEXT.substring(5), readAll(in));
+    }
+
+    @Test
+    public void writer() throws IOException {
+        StringWriter out = new StringWriter();
+        EnigmaWriter writer = new EnigmaWriter(out, machine());
+        writer.write(PLAINTEXT.charAt(0));
+        writer.write(PLAINTEXT, 1, 7);
+        writer.write(PLAINTEXT.substring(8).toCharArray());
+        writer.flush();
+        assertEquals(CIPHERTEXT, out.toString());
+    }
+
+    @Test
+    public void charset() throws IOException {
+        Charset cs = new EnigmaCharset(machine(), StandardCharsets.UTF_8);
+        byte[] bytes = PLAINTEXT.getBytes(cs);
+        assertArrayEquals(CIPHERTEXT.getBytes(StandardCharsets.UTF_8),
+                          bytes);
+        assertEquals(PLAINTEXT, new String(bytes, cs));
+        Reader in = new InputStreamReader(new ByteArrayInputStream(bytes),
+                                          cs);
+        assertEquals(PLAINTEXT, readAll(in));
+        Charset other = new EnigmaCharset(machine(), StandardCharsets.UTF_8);
+        assertFalse(cs.equals(other));
+        assertTrue(cs.name().startsWith("x-enigma-"));
+    }
+
+}
@@ -0,0 +1,62 @@
+package enigma;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/** A Writer that converts text with a Machine as it is written to
+ *  another, so that a message of any length is enciphered or deciphered
+ *  in constant memory.  Characters are converted as by Machine.filter:
+ *  those in the machine's alphabet are converted and all others are
+ *  passed through.  The arrays and strings written are left unchanged;
+ *  each is converted through one buffer of my own, a chunk at a time.
+ *  @author Fourth Teerakapibal
+ */
+final class EnigmaWriter extends FilterWriter {
+
+    /** A writer converting text with MACHINE, which it advances, and
+     *  writing the result to OUT. */
+    EnigmaWriter(Writer out, Machine machine) {
+        super(out);
+        _machine = machine;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        out.write(_machine.filter((char) c));
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            int k = Math.min(len, _buffer.length);
+            _machine.filter(cbuf, off, _buffer, 0, k);
+            out.write(_buffer, 0, k);
+            off += k;
+            len -= k;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            int k = Math.min(len, _buffer.length);
+            str.getChars(off, off + k, _buffer, 0);
+            _machine.filter(_buffer, 0, _buffer, 0, k);
+            out.write(_buffer, 0, k);
+            off += k;
+            len -= k;
+        }
+    }
+
+    /** Size of my conversion buffer. */
+    private static final int BUFFER_SIZE = 1 << 12;
+
+    /** Machine converting my text. */
+    private final Machine _machine;
+
+    /** Buffer holding converted text on its way to the underlying
+     *  writer. */
+    private final char[] _buffer = new char[BUFFER_SIZE];
+
+}
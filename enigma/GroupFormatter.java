@@ -0,0 +1,149 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+import static enigma.EnigmaException.*;
+
+/** Formats converted message lines into groups of letters separated by
+ *  spaces, writing them to a channel.  Characters are staged in a
+ *  reusable buffer, encoded into a reusable byte buffer, and written out
+ *  only when that fills or on flush(), so that formatting allocates
+ *  nothing per character.
+ *  @author Fourth Teerakapibal
+ */
+class GroupFormatter {
+
+    /** A formatter writing groups of GROUPSIZE letters to OUT. */
+    GroupFormatter(WritableByteChannel out, int groupSize) {
+        if (groupSize <= 0) {
+            throw error("Group size must be positive");
+        }
+        _out = out;
+        _groupSize = groupSize;
+        _chars = CharBuffer.allocate(BUFFER_SIZE);
+        _bytes = ByteBuffer.allocate(BUFFER_SIZE * 4);
+        _encoder = Charset.defaultCharset().newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /** Append LEN characters of MSG starting at OFF to the current line,
+     *  dropping whitespace and following every GROUPSIZE-th letter of
+     *  the line with a space. */
+    void write(char[] msg, int off, int len) {
+        for (int idx = off; idx < off + len; idx += 1) {
+            char c = msg[idx];
+            if (isSpace(c)) {
+                continue;
+            }
+            if (_chars.remaining() < 2) {
+                drain();
+            }
+            _chars.put(c);
+            _group += 1;
+            if (_group == _groupSize) {
+                _chars.put(' ');
+                _group = 0;
+            }
+        }
+    }
+
+    /** End the current line, and start grouping afresh on the next. */
+    void endLine() {
+        for (int i = 0; i < LINE_SEPARATOR.length(); i += 1) {
+            if (!_chars.hasRemaining()) {
+                drain();
+            }
+            _chars.put(LINE_SEPARATOR.charAt(i));
+        }
+        _group = 0;
+    }
+
+    /** Write BYTES, already formatted and encoded, after everything
+     *  formatted so far. */
+    void append(byte[] bytes) {
+        drain();
+        if (bytes.length > _bytes.remaining()) {
+            writeBytes();
+        }
+        if (bytes.length <= _bytes.remaining()) {
+            _bytes.put(bytes);
+            return;
+        }
+        ByteBuffer direct = ByteBuffer.wrap(bytes);
+        try {
+            while (direct.hasRemaining()) {
+                _out.write(direct);
+            }
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+    }
+
+    /** Write out everything formatted so far. */
+    void flush() {
+        drain();
+        writeBytes();
+    }
+
+    /** Encode the staged characters into _bytes, writing _bytes out
+     *  whenever it fills. */
+    private void drain() {
+        _chars.flip();
+        while (_encoder.encode(_chars, _bytes, false).isOverflow()) {
+            writeBytes();
+        }
+        _chars.compact();
+    }
+
+    /** Write the contents of _bytes to _out. */
+    private void writeBytes() {
+        _bytes.flip();
+        try {
+            while (_bytes.hasRemaining()) {
+                _out.write(_bytes);
+            }
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+        _bytes.clear();
+    }
+
+    /** Return true iff C is whitespace in the sense of the regular
+     *  expression class \s. */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B'
+            || c == '\f' || c == '\r';
+    }
+
+    /** Characters staged between encodings. */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    /** Terminator written at the end of each line. */
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /** Destination of formatted output. */
+    private final WritableByteChannel _out;
+
+    /** Number of letters in each group. */
+    private final int _groupSize;
+
+    /** Characters formatted but not yet encoded. */
+    private final CharBuffer _chars;
+
+    /** Encoded bytes not yet written. */
+    private final ByteBuffer _bytes;
+
+    /** Encoder from _chars to _bytes. */
+    private final CharsetEncoder _encoder;
+
+    /** Number of letters in the current, unfinished group. */
+    private int _group;
+
+}
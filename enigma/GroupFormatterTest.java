@@ -0,0 +1,52 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+
+/** The suite of all JUnit tests for the GroupFormatter class.
+ *  @author Fourth Teerakapibal
+ */
+public class GroupFormatterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return what a formatter with groups of GROUPSIZE prints for the
+     *  lines in LINES, each written in pieces of at most STEP
+     *  characters. */
+    private String format(int groupSize, int step, String... lines) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GroupFormatter out =
+            new GroupFormatter(Channels.newChannel(bytes), groupSize);
+        for (String line : lines) {
+            char[] chars = line.toCharArray();
+            for (int i = 0; i < chars.length; i += step) {
+                out.write(chars, i, Math.min(step, chars.length - i));
+            }
+            out.endLine();
+        }
+        out.flush();
+        return bytes.toString();
+    }
+
+    @Test
+    public void checkFives() {
+        String nl = System.lineSeparator();
+        assertEquals("ILBDA AMTAZ " + nl + nl + "HELLO WOR" + nl,
+                     format(5, 100, "ILBDAAMTAZ", "", "HEL LOW OR"));
+    }
+
+    @Test
+    public void checkAcrossParts() {
+        String nl = System.lineSeparator();
+        assertEquals("ABC DEF G" + nl + "HIJ " + nl,
+                     format(3, 2, "AB CDE FG", "HIJ"));
+    }
+
+}
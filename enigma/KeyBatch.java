@@ -0,0 +1,234 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** Many machines with the same rotors in their slots, differing only in
+ *  their settings, ring offsets and plugboards, converting the same
+ *  text in lockstep.  Their states are held as arrays of lanes, one
+ *  lane per machine, and their wiring as flat tables shared by all
+ *  lanes, so each stage of a keystroke is one loop over the lanes with
+ *  no calls and no objects: the form in which trying thousands of keys
+ *  on one short ciphertext is cheapest.  Rotors whose alphabets are too
+ *  large to tabulate are consulted directly instead.
+ *  @author Fourth Teerakapibal
+ */
+final class KeyBatch {
+
+    /** LANES machines described by SPEC with the rotors ORDER in their
+     *  slots, reflector first.  ORDER must be one that SPEC accepts, as
+     *  listed by MachineSpec.rotorOrders.  Every lane starts with all
+     *  rotors at 0 and an identity plugboard. */
+    KeyBatch(MachineSpec spec, Rotor[] order, int lanes) {
+        int numRotors = order.length;
+        if (numRotors >= Long.SIZE) {
+            throw error("Too many rotors to convert in a batch");
+        }
+        _size = spec.alphabet().size();
+        _lanes = lanes;
+        _rotors = order.clone();
+        _firstpawl = numRotors - spec.numPawls() - 1;
+        _forward = new int[numRotors][];
+        _backward = new int[numRotors][];
+        _notches = new boolean[numRotors][_size];
+        for (int slot = 0; slot < numRotors; slot += 1) {
+            Rotor rotor = order[slot];
+            if (rotor.rotates()) {
+                _rotatingMask |= 1L << slot;
+            }
+            for (int posn = 0; posn < _size; posn += 1) {
+                _notches[slot][posn] = rotor.atNotch(posn);
+            }
+            if (_size <= TABLE_LIMIT) {
+                _forward[slot] = table(rotor, true);
+                if (slot > 0) {
+                    _backward[slot] = table(rotor, false);
+                }
+            }
+        }
+        _settings = new int[numRotors][lanes];
+        _rows = new int[numRotors][lanes];
+        _plugboards = new int[lanes * _size];
+        _signals = new int[lanes];
+        _moves = new long[lanes];
+        for (int lane = 0; lane < lanes; lane += 1) {
+            for (int c = 0; c < _size; c += 1) {
+                _plugboards[lane * _size + c] = c;
+            }
+        }
+    }
+
+    /** Return the number of machines I convert with at once. */
+    int lanes() {
+        return _lanes;
+    }
+
+    /** Put lane LANE in the state of CURSOR, whose slots must hold my
+     *  rotors. */
+    void load(int lane, Cursor cursor) {
+        for (int slot = 0; slot < _rotors.length; slot += 1) {
+            assert cursor.rotor(slot) == _rotors[slot];
+            _settings[slot][lane] = cursor.setting(slot);
+            _rows[slot][lane] = cursor.row(slot);
+        }
+        Permutation plugboard = cursor.plugboard();
+        for (int c = 0; c < _size; c += 1) {
+            _plugboards[lane * _size + c] = plugboard.permute(c);
+        }
+    }
+
+    /** Convert TEXT, as alphabet indices, with every lane, advancing
+     *  each as for MachineSpec.convert.  The conversion by lane L of
+     *  TEXT[I] is stored in OUT[L * TEXT.length + I]. */
+    void convert(int[] text, int[] out) {
+        int last = _rotors.length - 1;
+        int[] signals = _signals;
+        for (int i = 0; i < text.length; i += 1) {
+            step();
+            int c = text[i];
+            for (int lane = 0, p = c; lane < _lanes; lane += 1, p += _size) {
+                signals[lane] = _plugboards[p];
+            }
+            for (int slot = last; slot >= 0; slot -= 1) {
+                pass(slot, _forward[slot], true);
+            }
+            for (int slot = 1; slot <= last; slot += 1) {
+                pass(slot, _backward[slot], false);
+            }
+            for (int lane = 0, p = 0; lane < _lanes; lane += 1, p += _size) {
+                out[lane * text.length + i] = _plugboards[p + signals[lane]];
+            }
+        }
+    }
+
+    /** Pass the signal of every lane through the rotor in slot SLOT,
+     *  forward if FORWARD, using TABLE, its wiring for that direction,
+     *  or the rotor itself if TABLE is null. */
+    private void pass(int slot, int[] table, boolean forward) {
+        int[] signals = _signals;
+        int[] rows = _rows[slot];
+        if (table != null) {
+            for (int lane = 0; lane < _lanes; lane += 1) {
+                signals[lane] = table[rows[lane] + signals[lane]];
+            }
+        } else if (forward) {
+            Rotor rotor = _rotors[slot];
+            for (int lane = 0; lane < _lanes; lane += 1) {
+                signals[lane] = rotor.convertForward(signals[lane],
+                                                     rows[lane]);
+            }
+        } else {
+            Rotor rotor = _rotors[slot];
+            for (int lane = 0; lane < _lanes; lane += 1) {
+                signals[lane] = rotor.convertBackward(signals[lane],
+                                                      rows[lane]);
+            }
+        }
+    }
+
+    /** Advance the rotors of every lane as for one keystroke, by the
+     *  rules of MachineSpec.step. */
+    private void step() {
+        int last = _rotors.length - 1;
+        long[] moves = _moves;
+        for (int lane = 0; lane < _lanes; lane += 1) {
+            long move = 1L << last;
+            for (int idx = last - 1; idx >= 0; idx -= 1) {
+                if (_notches[idx + 1][_settings[idx + 1][lane]]) {
+                    if ((_rotatingMask & (1L << idx)) != 0) {
+                        move |= 3L << idx;
+                    } else if (idx != _firstpawl) {
+                        move |= 1L << (idx + 1);
+                    }
+                }
+            }
+            moves[lane] = move;
+        }
+        for (int idx = 0; idx <= last; idx += 1) {
+            long bit = 1L << idx;
+            if ((_rotatingMask & bit) == 0) {
+                continue;
+            }
+            int[] settings = _settings[idx];
+            int[] rows = _rows[idx];
+            for (int lane = 0; lane < _lanes; lane += 1) {
+                if ((moves[lane] & bit) != 0) {
+                    advance(settings, rows, lane);
+                }
+            }
+        }
+    }
+
+    /** Advance one rotor of lane LANE one position, where SETTINGS and
+     *  ROWS hold that rotor's settings and rows by lane. */
+    private void advance(int[] settings, int[] rows, int lane) {
+        settings[lane] += 1;
+        rows[lane] += _size;
+        if (settings[lane] == _size) {
+            settings[lane] = 0;
+        }
+        if (rows[lane] == _size * _size) {
+            rows[lane] = 0;
+        }
+    }
+
+    /** Return the wiring table of ROTOR, forward if FORWARD and
+     *  otherwise backward: entry ROW + P is its conversion of P at the
+     *  position whose row is ROW. */
+    private int[] table(Rotor rotor, boolean forward) {
+        int[] table = new int[_size * _size];
+        for (int row = 0; row < table.length; row += _size) {
+            for (int p = 0; p < _size; p += 1) {
+                table[row + p] = forward ? rotor.convertForward(p, row)
+                    : rotor.convertBackward(p, row);
+            }
+        }
+        return table;
+    }
+
+    /** Largest alphabet whose wiring is tabulated. */
+    private static final int TABLE_LIMIT = 1024;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of lanes. */
+    private final int _lanes;
+
+    /** The rotor in each slot, reflector first. */
+    private final Rotor[] _rotors;
+
+    /** The slot to the left of the leftmost pawl. */
+    private final int _firstpawl;
+
+    /** Bit SLOT is set iff the rotor in slot SLOT rotates. */
+    private long _rotatingMask;
+
+    /** Forward wiring of each slot's rotor, or null if not tabulated. */
+    private final int[][] _forward;
+
+    /** Backward wiring of each slot's rotor, or null if not tabulated
+     *  or the slot holds the reflector. */
+    private final int[][] _backward;
+
+    /** _notches[SLOT][POSN] is true iff the rotor in slot SLOT has a
+     *  notch at setting POSN. */
+    private final boolean[][] _notches;
+
+    /** Setting of each slot's rotor, by lane. */
+    private final int[][] _settings;
+
+    /** Wiring table row of each slot's rotor, by lane. */
+    private final int[][] _rows;
+
+    /** Plugboard of each lane: entry LANE * _size + C is the plugboard's
+     *  image of C. */
+    private final int[] _plugboards;
+
+    /** The signal of each lane, as it passes through the rotors. */
+    private final int[] _signals;
+
+    /** Bit SLOT of each lane's entry is set iff the rotor in slot SLOT
+     *  moves on the current keystroke. */
+    private final long[] _moves;
+
+}
@@ -0,0 +1,321 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static enigma.EnigmaException.*;
+
+/** Recovers the rotor order and start positions of a message from its
+ *  ciphertext alone.  Every choice of reflector and rotors that fits the
+ *  slots of a MachineSpec, at every start position, trial-decrypts the
+ *  message with an empty plugboard and ring settings of A, and is scored
+ *  by the index of coincidence of the result, which is highest for text
+ *  in a natural language.  The keyspace is divided among the workers of
+ *  a fork-join pool; each worker tries its keys LANES at a time in a
+ *  KeyBatch, so no Machine or rotor is created per key.
+ *  @author Fourth Teerakapibal
+ */
+final class KeySearch {
+
+    /** A search over the rotors and positions of machines described by
+     *  SPEC. */
+    KeySearch(MachineSpec spec) {
+        _spec = spec;
+        _size = spec.alphabet().size();
+        _plugboard = new Permutation("", spec.alphabet());
+        _orders = spec.rotorOrders();
+        long positions = 1;
+        for (int idx = 1; idx < spec.numRotors(); idx++) {
+            positions = Math.multiplyExact(positions, _size);
+        }
+        _positions = positions;
+    }
+
+    /** Return the number of rotor orders I try. */
+    int numOrders() {
+        return _orders.size();
+    }
+
+    /** Return the number of keys I try: start positions of every rotor
+     *  order. */
+    long numKeys() {
+        return Math.multiplyExact(_positions, (long) _orders.size());
+    }
+
+    /** Return the COUNT best keys for CIPHERTEXT, best first, searching
+     *  on the common fork-join pool. */
+    List<Candidate> search(String ciphertext, int count) {
+        return search(ciphertext, count, ForkJoinPool.commonPool());
+    }
+
+    /** Return the COUNT best keys for CIPHERTEXT, best first, searching
+     *  on POOL.  Whitespace in CIPHERTEXT is ignored.  Keys with equal
+     *  scores are ranked in the order in which they are tried. */
+    List<Candidate> search(String ciphertext, int count, ForkJoinPool pool) {
+        if (count <= 0) {
+            throw error("Number of results must be positive");
+        }
+        if (_orders.isEmpty()) {
+            throw error("No rotor order fits the machine");
+        }
+        int[] text = encode(ciphertext);
+        Best best = pool.invoke(new Slice(text, count, 0, numKeys()));
+        List<Candidate> result = new ArrayList<>();
+        for (int k = 0; k < best.size(); k += 1) {
+            result.add(candidate(best.key(k), best.score(k)));
+        }
+        return result;
+    }
+
+    /** One key found by a search, with its score. */
+    static final class Candidate {
+
+        /** A key with the rotors named ROTORS, reflector first, at start
+         *  positions SETTING, scoring SCORE. */
+        Candidate(String[] rotors, String setting, double score) {
+            _rotors = rotors;
+            _setting = setting;
+            _score = score;
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return my start positions, leftmost rotor first. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the index of coincidence of my trial decryption. */
+        double score() {
+            return _score;
+        }
+
+        /** Return the setting line selecting me, as for Main. */
+        @Override
+        public String toString() {
+            return "* " + String.join(" ", _rotors) + " " + _setting;
+        }
+
+        /** Names of my rotors. */
+        private final String[] _rotors;
+        /** My start positions. */
+        private final String _setting;
+        /** My score. */
+        private final double _score;
+    }
+
+    /** Return the alphabet indices of the non-whitespace characters of
+     *  CIPHERTEXT. */
+    private int[] encode(String ciphertext) {
+        Alphabet alpha = _spec.alphabet();
+        int[] text = new int[ciphertext.length()];
+        int n = 0;
+        for (int i = 0; i < ciphertext.length(); i += 1) {
+            char c = ciphertext.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (!alpha.contains(c)) {
+                throw error("Message not in alphabet");
+            }
+            text[n] = alpha.toInt(c);
+            n += 1;
+        }
+        if (n < 2) {
+            throw error("Message too short to score");
+        }
+        return Arrays.copyOf(text, n);
+    }
+
+    /** Return the key numbered KEY as a Candidate scoring SCORE. */
+    private Candidate candidate(long key, double score) {
+        Rotor[] order = _orders.get((int) (key / _positions));
+        long posn = key % _positions;
+        String[] names = new String[order.length];
+        char[] setting = new char[order.length - 1];
+        for (int idx = order.length - 1; idx >= 1; idx -= 1) {
+            names[idx] = order[idx].name();
+            setting[idx - 1] = _spec.alphabet().toChar((int) (posn % _size));
+            posn /= _size;
+        }
+        names[0] = order[0].name();
+        return new Candidate(names, new String(setting), score);
+    }
+
+    /** Tries a range of keys, splitting it among workers. */
+    private class Slice extends RecursiveTask<Best> {
+
+        /** Try keys LO .. HI-1 on TEXT, keeping the COUNT best. */
+        Slice(int[] text, int count, long lo, long hi) {
+            _text = text;
+            _count = count;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected Best compute() {
+            if (_hi - _lo > SLICE_SIZE) {
+                long mid = (_lo + _hi) >>> 1;
+                Slice left = new Slice(_text, _count, _lo, mid);
+                left.fork();
+                Best best = new Slice(_text, _count, mid, _hi).compute();
+                best.addAll(left.join());
+                return best;
+            }
+            Best best = new Best(_count);
+            Cursor cursor = _spec.newCursor();
+            cursor.setPlugboard(_plugboard);
+            int[] out = new int[LANES * _text.length];
+            int[] counts = new int[_size];
+            KeyBatch batch = null;
+            int loaded = -1;
+            long key = _lo;
+            while (key < _hi) {
+                int order = (int) (key / _positions);
+                if (order != loaded) {
+                    Rotor[] rotors = _orders.get(order);
+                    for (int idx = 0; idx < rotors.length; idx += 1) {
+                        cursor.setRotor(idx, rotors[idx]);
+                    }
+                    batch = new KeyBatch(_spec, rotors, LANES);
+                    loaded = order;
+                }
+                long end = Math.min(Math.min(_hi, key + LANES),
+                                    (order + 1) * _positions);
+                for (int lane = 0; key + lane < end; lane += 1) {
+                    long posn = (key + lane) % _positions;
+                    for (int idx = cursor.numRotors() - 1; idx >= 1;
+                         idx -= 1) {
+                        cursor.setSetting(idx, (int) (posn % _size));
+                        posn /= _size;
+                    }
+                    batch.load(lane, cursor);
+                }
+                batch.convert(_text, out);
+                for (int lane = 0; key + lane < end; lane += 1) {
+                    best.add(key + lane, score(out, lane, counts));
+                }
+                key = end;
+            }
+            return best;
+        }
+
+        /** Return the index of coincidence of my text as decrypted by
+         *  lane LANE of a KeyBatch into OUT, using COUNTS to tally
+         *  letters. */
+        private double score(int[] out, int lane, int[] counts) {
+            Arrays.fill(counts, 0);
+            int len = _text.length;
+            for (int i = lane * len; i < (lane + 1) * len; i += 1) {
+                counts[out[i]] += 1;
+            }
+            long pairs = 0;
+            for (int n : counts) {
+                pairs += (long) n * (n - 1);
+            }
+            return (double) pairs / ((long) len * (len - 1));
+        }
+
+        /** Ciphertext, as alphabet indices. */
+        private final int[] _text;
+        /** Number of keys to keep. */
+        private final int _count;
+        /** First key of my range. */
+        private final long _lo;
+        /** End of my range of keys. */
+        private final long _hi;
+    }
+
+    /** The highest-scoring keys seen so far, up to a fixed number. */
+    private static class Best {
+
+        /** An empty list keeping up to COUNT keys. */
+        Best(int count) {
+            _keys = new long[count];
+            _scores = new double[count];
+        }
+
+        /** Return the number of keys kept. */
+        int size() {
+            return _size;
+        }
+
+        /** Return the Kth best key. */
+        long key(int k) {
+            return _keys[k];
+        }
+
+        /** Return the score of the Kth best key. */
+        double score(int k) {
+            return _scores[k];
+        }
+
+        /** Consider KEY, scoring SCORE. */
+        void add(long key, double score) {
+            int k = _size;
+            while (k > 0 && better(key, score, _keys[k - 1],
+                                   _scores[k - 1])) {
+                k -= 1;
+            }
+            if (k == _keys.length) {
+                return;
+            }
+            int last = Math.min(_size, _keys.length - 1);
+            System.arraycopy(_keys, k, _keys, k + 1, last - k);
+            System.arraycopy(_scores, k, _scores, k + 1, last - k);
+            _keys[k] = key;
+            _scores[k] = score;
+            _size = last + 1;
+        }
+
+        /** Consider all the keys kept by OTHER. */
+        void addAll(Best other) {
+            for (int k = 0; k < other._size; k += 1) {
+                add(other._keys[k], other._scores[k]);
+            }
+        }
+
+        /** Return true iff KEY0, scoring SCORE0, ranks above KEY1,
+         *  scoring SCORE1. */
+        private static boolean better(long key0, double score0,
+                                      long key1, double score1) {
+            return score0 > score1 || score0 == score1 && key0 < key1;
+        }
+
+        /** Keys kept, best first. */
+        private final long[] _keys;
+        /** Their scores. */
+        private final double[] _scores;
+        /** Number of keys kept. */
+        private int _size;
+    }
+
+    /** Number of keys tried at once in a KeyBatch. */
+    private static final int LANES = 64;
+
+    /** Most keys tried by one worker without splitting its range. */
+    private static final int SLICE_SIZE = 1 << 12;
+
+    /** Description of the machines searched. */
+    private final MachineSpec _spec;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** The empty plugboard used for every trial. */
+    private final Permutation _plugboard;
+
+    /** Every rotor order tried, reflector first. */
+    private final List<Rotor[]> _orders;
+
+    /** Number of start positions of each rotor order. */
+    private final long _positions;
+
+}
@@ -0,0 +1,113 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests of ciphertext-only key search.
+ *  @author Fourth Teerakapibal
+ */
+public class KeySearchTest {
+
+    /** English plaintext long enough to stand out by its index of
+     *  coincidence. */
+    private static final String PLAINTEXT =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOODMADEOFSLIDING"
+        + "FOLDINGROSEWOODNEATLYPUTITALLTOGETHERINITSCASEITLAYCOMPACTLY"
+        + "FOLDEDINTONEARLYNOTHINGBUTHEOPENEDOUTTHEHINGESPUSHEDANDPULLED"
+        + "THEJOINTSANDHINGESTILLITLOOKEDALLSQUARESANDOBLONGS";
+
+    /** Return a spec for a four-slot machine with three pawls and the
+     *  naval rotors named NAMES. */
+    private MachineSpec spec(String... names) {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (Rotor rotor : TestUtils.initRotor()) {
+            if (List.of(names).contains(rotor.name())) {
+                rotors.add(rotor);
+            }
+        }
+        return new MachineSpec(new Alphabet(), 4, 3, rotors);
+    }
+
+    @Test
+    public void enumeratesOrders() {
+        KeySearch search = new KeySearch(spec("B", "C", "I", "II", "III",
+                                              "Beta"));
+        assertEquals(12, search.numOrders());
+        assertEquals(12L * 26 * 26 * 26, search.numKeys());
+    }
+
+    @Test
+    public void findsKey() {
+        MachineSpec spec = spec("B", "I", "II", "III");
+        Machine machine = new Machine(spec);
+        machine.insertRotors(new String[]{"B", "III", "I", "II"});
+        machine.setRotors("QDF", "AAA");
+        machine.setPlugboard(new Permutation("", new Alphabet()));
+        String ciphertext = machine.convert(PLAINTEXT);
+
+        List<KeySearch.Candidate> best =
+            new KeySearch(spec).search(ciphertext, 3);
+        assertEquals(3, best.size());
+        assertEquals("* B III I II QDF", best.get(0).toString());
+        assertTrue(best.get(0).score() > best.get(1).score());
+        assertTrue(best.get(1).score() >= best.get(2).score());
+    }
+
+    @Test
+    public void rejectsForeignCharacters() {
+        try {
+            new KeySearch(spec("B", "I", "II", "III")).search("AB3C", 1);
+            fail("no error for character outside alphabet");
+        } catch (EnigmaException excp) {
+            return;
+        }
+    }
+
+    @Test
+    public void batchMatchesMachines() {
+        MachineSpec spec = new MachineSpec(new Alphabet(), 5, 3,
+                                           TestUtils.initRotor());
+        String[] names = {"B", "Beta", "III", "IV", "I"};
+        String[] settings = {"AXLE", "AAJP", "ZZZZ", "QEVJ", "MDUQ"};
+        String[] rings = {"AAAA", "BCDE", "ZZZZ", "AAKQ", "QRST"};
+        String[] plugboards = {"", "(HQ) (EX) (IP) (TR) (BY)", "(AZ)",
+                               "(QW) (ER)", "(MN) (OP) (LK)"};
+        Rotor[] order = new Rotor[names.length];
+        for (int idx = 0; idx < names.length; idx += 1) {
+            order[idx] = spec.rotor(names[idx]);
+        }
+        int[] text = new int[PLAINTEXT.length()];
+        for (int i = 0; i < text.length; i += 1) {
+            text[i] = PLAINTEXT.charAt(i) - 'A';
+        }
+        KeyBatch batch = new KeyBatch(spec, order, settings.length);
+        Machine[] machines = new Machine[settings.length];
+        for (int lane = 0; lane < settings.length; lane += 1) {
+            Cursor cursor = spec.newCursor();
+            spec.insertRotors(cursor, names);
+            spec.setRotors(cursor, settings[lane], rings[lane]);
+            cursor.setPlugboard(new Permutation(plugboards[lane],
+                                                new Alphabet()));
+            batch.load(lane, cursor);
+            machines[lane] = new Machine(spec);
+            machines[lane].insertRotors(names);
+            machines[lane].setRotors(settings[lane], rings[lane]);
+            machines[lane].setPlugboard(new Permutation(plugboards[lane],
+                                                        new Alphabet()));
+        }
+        int[] out = new int[settings.length * text.length];
+        batch.convert(text, out);
+        for (int lane = 0; lane < settings.length; lane += 1) {
+            String expected = machines[lane].convert(PLAINTEXT);
+            for (int i = 0; i < text.length; i += 1) {
+                assertEquals("lane " + lane + " at " + i,
+                             expected.charAt(i),
+                             (char) ('A' + out[lane * text.length + i]));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package enigma;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/** The keystream table of one key: for each position of a machine's
+ *  rotors along their period, the permutation of the whole path from
+ *  plugboard to reflector and back.  Rows are filled in as positions
+ *  are first reached.  A row is the same whichever machine fills it, so
+ *  one table may be shared by copies of a machine converting on
+ *  different threads; a row is marked ready with release ordering and
+ *  checked with acquire ordering, so that a thread that sees it ready
+ *  also sees its contents.
+ *  @author Fourth Teerakapibal
+ */
+final class KeystreamTable {
+
+    /** An empty table of ROWS rows for an alphabet of SIZE
+     *  characters. */
+    KeystreamTable(int rows, int size) {
+        _size = size;
+        _entries = new int[rows * size];
+        _ready = new boolean[rows];
+    }
+
+    /** Return the number of bytes taken by a table of ROWS rows for an
+     *  alphabet of SIZE characters, or Long.MAX_VALUE if it cannot be
+     *  made. */
+    static long bytes(int rows, int size) {
+        long entries = (long) rows * size;
+        if (entries > Integer.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return entries * Integer.BYTES + rows;
+    }
+
+    /** Return true iff row POS has been filled in. */
+    boolean ready(int pos) {
+        return (boolean) READY.getAcquire(_ready, pos);
+    }
+
+    /** Return the entry for index C in row POS, once it is ready. */
+    int get(int pos, int c) {
+        return _entries[pos * _size + c];
+    }
+
+    /** Set the entry for index C in row POS to V. */
+    void set(int pos, int c, int v) {
+        _entries[pos * _size + c] = v;
+    }
+
+    /** Mark row POS, whose entries have all been set, as ready. */
+    void publish(int pos) {
+        READY.setRelease(_ready, pos, true);
+    }
+
+    /** Mark all rows as not filled in.  Only for a table that is not
+     *  shared. */
+    void clear() {
+        Arrays.fill(_ready, false);
+    }
+
+    /** Return true iff I may be in use by more than one machine. */
+    boolean shared() {
+        return _shared;
+    }
+
+    /** Record that I may be in use by more than one machine. */
+    void share() {
+        _shared = true;
+    }
+
+    /** Access to the elements of _ready with memory ordering. */
+    private static final VarHandle READY =
+        MethodHandles.arrayElementVarHandle(boolean[].class);
+
+    /** Size of the alphabet, and so the length of each row. */
+    private final int _size;
+
+    /** Entry C of row P is at P * _size + C. */
+    private final int[] _entries;
+
+    /** Which rows have been filled in. */
+    private final boolean[] _ready;
+
+    /** True once I have been given to a copy of my machine. */
+    private volatile boolean _shared;
+
+}
@@ -1,6 +1,7 @@
 package enigma;
 
-import java.util.ArrayList;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.Collection;
 
 import static enigma.EnigmaException.*;
@@ -15,24 +16,52 @@ class Machine {
      *  available rotors. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
-        _alphabet = alpha;
-        _numRotors = numRotors;
-        _pawls = pawls;
-        _allRotors = allRotors;
-        _rotorsused = new ArrayList<Rotor>();
+        this(new MachineSpec(alpha, numRotors, pawls, allRotors));
+    }
+
+    /** A new Enigma machine described by SPEC, which it shares with any
+     *  other machine built from it.  Rotors taken from SPEC are never
+     *  moved; my positions are kept apart from them. */
+    Machine(MachineSpec spec) {
+        _spec = spec;
+        _alphabet = spec.alphabet();
+        _cursor = spec.newCursor();
+        _snapshotLimit = snapshotLimit(spec);
+    }
+
+    /** A machine in the same state as MACHINE that changes independently
+     *  of it. */
+    private Machine(Machine machine) {
+        _spec = machine._spec;
+        _alphabet = machine._alphabet;
+        _cursor = machine._cursor.copy();
+        _snapshotLimit = machine._snapshotLimit;
+        _stateCount = machine._stateCount;
+        _schedule = machine._schedule;
+        _scheduleIndex = machine._scheduleIndex;
+        _scheduleTail = machine._scheduleTail;
+        _keystreamLimit = machine._keystreamLimit;
+        _keystream = machine._keystream;
+        _keystreamFull = machine._keystreamFull;
+        _position = -1;
+        _core = machine._core;
+        _coreRejected = machine._coreRejected;
+        _slowKeys = machine._slowKeys;
+    }
+
+    /** Return my description. */
+    MachineSpec spec() {
+        return _spec;
     }
-    /** Alphabet order for offset in ringsetting.**/
-    private Alphabet alphabetoffset = new Alphabet(
-            "ABCDEFGHIJKLMNOPQRSTUVWXYZ");
 
     /** Return the number of rotor slots I have. */
     int numRotors() {
-        return _numRotors;
+        return _spec.numRotors();
     }
 
     /** Return the number pawls (and thus rotating rotors) I have. */
     int numPawls() {
-        return _pawls;
+        return _spec.numPawls();
     }
 
     /** Set my rotor slots to the rotors named ROTORS from my set of
@@ -40,37 +69,21 @@ class Machine {
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(String[] rotors) {
         assert rotors.length == numRotors();
-        if (_rotorsused.size() == _numRotors) {
-            int counter = 0;
-            for (String rotor: rotors) {
-                boolean checkrotor = false;
-                for (Rotor allrotor : _allRotors) {
-                    if (allrotor.name().equals(rotor)) {
-                        _rotorsused.set(counter, allrotor);
-                        counter += 1;
-                        checkrotor = true;
-                    }
-                }
-                if (!checkrotor) {
-                    throw error("Misnamed rotor");
-                }
-            }
-        } else {
-            for (String rotor: rotors) {
-                for (Rotor allrotor : _allRotors) {
-                    if (allrotor.name().equals(rotor)) {
-                        _rotorsused.add(allrotor);
-                    }
+        _position = -1;
+        dropCore();
+        resetKeystream();
+        _spec.insertRotors(_cursor, rotors);
+        _stateCount = 1;
+        for (int idx = 0; idx < numRotors(); idx++) {
+            if (_cursor.rotating(idx) && _stateCount > 0) {
+                _stateCount *= _alphabet.size();
+                if (_stateCount > SCHEDULE_LIMIT) {
+                    _stateCount = -1;
                 }
             }
-            if (_rotorsused.size() != numRotors()) {
-                throw error("Misnamed rotor");
-            }
-        }
-
-        if (!_rotorsused.get(0).reflecting()) {
-            throw error("First rotor must be a reflector");
         }
+        _schedule = null;
+        _scheduleIndex = null;
     }
 
     /** Set my rotors according to SETTING, which must be a string of
@@ -79,125 +92,523 @@ class Machine {
      *  @param offset offset of the rotors
      *  @param setting initial setting of rotors*/
     void setRotors(String setting, String offset) {
-        for (int idx = 1; idx < numRotors(); idx++) {
-            _rotorsused.get(idx).set(setting.charAt(idx - 1));
-            char offsetchar = offset.charAt(idx - 1);
-            int offsetint = alphabetoffset.toInt(offsetchar);
-            _rotorsused.get(idx).setoffset(offsetint);
-        }
+        _position = -1;
+        dropCore();
+        resetKeystream();
+        _spec.setRotors(_cursor, setting, offset);
     }
 
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
-        _plugboard = plugboard;
+        syncRotors();
+        dropCore();
+        resetKeystream();
+        _cursor.setPlugboard(plugboard);
+    }
+
+    /** Convert with a keystream table of at most LIMIT bytes, or not at
+     *  all if LIMIT is 0.  For a given choice of rotors, ring settings
+     *  and plugboard, each position of my rotors within their period
+     *  determines one permutation of the whole path from plugboard to
+     *  reflector and back.  The table holds that permutation for each
+     *  position, filled in as positions are first reached, so that
+     *  convert(int) then costs one lookup.  The period is recorded, as
+     *  for seek, and the table made, on the first conversion or seek
+     *  that needs them.  When my rotors have too many positions to
+     *  record their period, or the table would exceed LIMIT,
+     *  conversion goes rotor by rotor as usual.  Copies made once the
+     *  table exists share it for as long as they keep my key, so LIMIT
+     *  bounds the table of each key, not of each copy; a copy made
+     *  before then makes its own. */
+    void setKeystreamLimit(long limit) {
+        syncRotors();
+        _keystream = null;
+        _keystreamFull = false;
+        _keystreamLimit = limit;
     }
 
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
     int convert(int c) {
-        boolean [] checkmove = new boolean[numRotors()];
-        Rotor farright = _rotorsused.get(numRotors() - 1);
-        checkmove[numRotors() - 1] = true;
-        if (farright.atNotch()) {
-            for (int idx = numRotors() - 2; idx >= 0; idx--) {
-                Rotor currotor = _rotorsused.get(idx);
-                Rotor predrotor = _rotorsused.get(idx + 1);
-                if (predrotor.atNotch()) {
-                    if (currotor.rotates()) {
-                        checkmove[idx] = true;
-                        checkmove[idx + 1] = true;
-                    } else if (idx == numRotors() - numPawls() - 1) {
-                        continue;
-                    } else {
-                        checkmove[idx + 1] = true;
-                    }
-                }
+        if (_position >= 0 || enterKeystream()) {
+            _position += 1;
+            if (_position == _schedule.length) {
+                _position = _scheduleTail;
             }
-        } else {
-            for (int idx = numRotors() - 3; idx >= 0; idx--) {
-                Rotor currotor = _rotorsused.get(idx);
-                Rotor predrotor = _rotorsused.get(idx + 1);
-                if (predrotor.atNotch()) {
-                    if (currotor.rotates()) {
-                        checkmove[idx] = true;
-                        checkmove[idx + 1] = true;
-                    } else if (idx == numRotors() - numPawls() - 1) {
-                        continue;
-                    } else {
-                        checkmove[idx + 1] = true;
-                    }
-                }
+            if (!_keystream.ready(_position)) {
+                fillRow(_position);
             }
+            return _keystream.get(_position, c);
         }
-        for (int idx = 0; idx < numRotors(); idx++) {
-            if (checkmove[idx]) {
-                _rotorsused.get(idx).advance();
+        if (_packed || enterPacked()) {
+            long moves = _core.moves(_state);
+            if (!_core.quiet(moves)) {
+                _doubleSteps += _core.doubleSteps(_state);
             }
+            _advances += Long.bitCount(moves);
+            _state = _core.advance(_state, moves);
+            if (_core.stackKey(_state) != _stackKey) {
+                _stackKey = _core.stackKey(_state);
+                _stack = _core.stack(_state, _stackScratch);
+            }
+            return _core.path(_state, c, _stack);
         }
-        int plugin = _plugboard.permute(c);
-        int curstatus = plugin;
-        for (int idx = numRotors() - 1; idx >= 0; idx--) {
-            Rotor currotor = _rotorsused.get(idx);
-            curstatus = currotor.convertForward(curstatus);
+        return _spec.convert(_cursor, c);
+    }
+
+    /** Start converting with a PackedCore for my present key, once
+     *  CORE_THRESHOLD keystrokes have been converted with it rotor by
+     *  rotor, and return true iff I am doing so.  My rotors' settings
+     *  are then no longer kept up to date; _state records them instead,
+     *  until syncRotors. */
+    private boolean enterPacked() {
+        if (_core == null) {
+            _slowKeys += 1;
+            if (_coreRejected || _slowKeys <= CORE_THRESHOLD) {
+                return false;
+            }
+            if (!PackedCore.accepts(_spec, _cursor)) {
+                _coreRejected = true;
+                return false;
+            }
+            _core = new PackedCore(_spec, _cursor);
+        }
+        if (_stackScratch == null) {
+            _stackScratch = new int[_alphabet.size()];
+        }
+        _stackKey = -1;
+        _state = _core.pack(_cursor);
+        _packed = true;
+        return true;
+    }
+
+    /** Stop using any PackedCore, after a change of key. */
+    private void dropCore() {
+        _packed = false;
+        _core = null;
+        _coreRejected = false;
+        _slowKeys = 0;
+    }
+
+    /** Start converting through the keystream table, if it is enabled
+     *  and can be used, and return true iff it can.  My rotors' settings
+     *  are then no longer kept up to date; _position records them
+     *  instead, as an index into _schedule, until syncRotors. */
+    private boolean enterKeystream() {
+        if (_keystreamLimit == 0 || _stateCount < 0
+            || _cursor.plugboard() == null) {
+            return false;
         }
+        if (_keystream == null && _keystreamFull) {
+            return false;
+        }
+        syncRotors();
+        int pos = _scheduleIndex == null ? -1 : _scheduleIndex[packState()];
+        if (pos < 0) {
+            buildSchedule();
+            pos = 0;
+        }
+        if (!makeKeystream()) {
+            return false;
+        }
+        _position = pos;
+        return true;
+    }
+
+    /** Make my keystream table for the present _schedule, if it is
+     *  enabled and not yet made, and return true iff I then have one
+     *  that fits within _keystreamLimit. */
+    private boolean makeKeystream() {
+        if (_keystream == null && !_keystreamFull && _keystreamLimit > 0
+            && _cursor.plugboard() != null) {
+            int rows = _schedule.length, size = _alphabet.size();
+            if (KeystreamTable.bytes(rows, size) > _keystreamLimit) {
+                _keystreamFull = true;
+            } else {
+                _keystream = new KeystreamTable(rows, size);
+            }
+        }
+        return _keystream != null;
+    }
+
+    /** Fill in the row of _keystream for position POS of _schedule. */
+    private void fillRow(int pos) {
+        unpackState(_schedule[pos]);
+        for (int c = 0; c < _alphabet.size(); c++) {
+            _keystream.set(pos, c, _spec.path(_cursor, c));
+        }
+        _keystream.publish(pos);
+    }
+
+    /** Discard the contents of my keystream table after a change of
+     *  key, keeping its storage for reuse while my rotors' period is
+     *  unchanged, unless copies of me may still be using it. */
+    private void resetKeystream() {
+        if (_keystream != null && _keystream.shared()) {
+            _keystream = null;
+        } else if (_keystream != null) {
+            _keystream.clear();
+        }
+        _keystreamFull = false;
+    }
+
+    /** If I am converting through the keystream table or a PackedCore,
+     *  bring my rotors' settings up to date and stop doing so until the
+     *  next conversion. */
+    private void syncRotors() {
+        if (_position >= 0) {
+            unpackState(_schedule[_position]);
+            _position = -1;
+        }
+        if (_packed) {
+            _core.unpack(_state, _cursor);
+            _packed = false;
+        }
+    }
+
+    /** Return a copy of me, in my current state, whose rotors move
+     *  independently of mine. */
+    Machine copy() {
+        syncRotors();
+        if (_keystream != null) {
+            _keystream.share();
+        }
+        return new Machine(this);
+    }
+
+    /** Return the number of rotor advances simulated since the last
+     *  call, and start counting afresh.  These include the advances made
+     *  in recording my period for seek, but not positions converted
+     *  through the keystream table, which are not simulated. */
+    long takeAdvances() {
+        long advances = _advances + _cursor.takeAdvances();
+        _advances = 0;
+        return advances;
+    }
+
+    /** Return the number of double steps simulated since the last call,
+     *  and start counting afresh. */
+    long takeDoubleSteps() {
+        long doubleSteps = _doubleSteps + _cursor.takeDoubleSteps();
+        _doubleSteps = 0;
+        return doubleSteps;
+    }
+
+    /** Return the settings and ring offsets of my rotors, packed into
+     *  one number, for restore.  My rotors and plugboard are not
+     *  included: they do not change as I convert, so a snapshot marks a
+     *  point in the messages of one key, to which any machine with the
+     *  same rotors and plugboard can return. */
+    long snapshot() {
+        if (_snapshotLimit < 0) {
+            throw error("Machine too large to snapshot");
+        }
+        syncRotors();
+        int size = _alphabet.size();
+        long state = 0;
         for (int idx = 1; idx < numRotors(); idx++) {
-            Rotor currotor = _rotorsused.get(idx);
-            curstatus = currotor.convertBackward(curstatus);
+            state = (state * size + _cursor.setting(idx)) * size
+                + _cursor.offset(idx);
+        }
+        return state;
+    }
+
+    /** Return my rotors to the settings and ring offsets packed in
+     *  STATE, as returned by snapshot.  Allocates nothing.  A change of
+     *  ring offset, or of the setting of a rotor that does not move,
+     *  changes the wiring seen at each position of the moving rotors,
+     *  and so discards any PackedCore and keystream table. */
+    void restore(long state) {
+        if (state < 0 || state >= _snapshotLimit) {
+            throw error("Invalid machine snapshot");
+        }
+        _position = -1;
+        _packed = false;
+        int size = _alphabet.size();
+        boolean newWiring = false;
+        for (int idx = numRotors() - 1; idx >= 1; idx--) {
+            int offset = (int) (state % size);
+            state /= size;
+            int setting = (int) (state % size);
+            state /= size;
+            if (offset != _cursor.offset(idx)
+                || !_cursor.rotating(idx)
+                   && setting != _cursor.setting(idx)) {
+                newWiring = true;
+            }
+            _cursor.setOffset(idx, offset);
+            _cursor.setSetting(idx, setting);
+        }
+        if (newWiring) {
+            dropCore();
+            resetKeystream();
+        }
+    }
+
+    /** Return the number of distinct snapshots of machines described by
+     *  SPEC, or -1 if they cannot be packed into a long. */
+    private static long snapshotLimit(MachineSpec spec) {
+        long limit = 1;
+        for (int k = 2; k < 2 * spec.numRotors(); k++) {
+            if (limit > Long.MAX_VALUE / spec.alphabet().size()) {
+                return -1;
+            }
+            limit *= spec.alphabet().size();
+        }
+        return limit;
+    }
+
+    /** Return a copy of my cursor, in my current state. */
+    Cursor cursor() {
+        syncRotors();
+        return _cursor.copy();
+    }
+
+    /** Advance my rotors as for N keystrokes, without converting
+     *  anything.  My rotors' positions eventually repeat with a period
+     *  no longer than the number of combinations of the settings of my
+     *  rotating rotors.  When that number is at most SCHEDULE_LIMIT, the
+     *  positions along the period are recorded once, and each seek then
+     *  takes constant time.  Otherwise, runs of keystrokes that move
+     *  only the rightmost rotor are skipped in one jump. */
+    void seek(long n) {
+        if (n < 0) {
+            throw error("Cannot seek backward");
+        }
+        syncRotors();
+        if (_stateCount < 0) {
+            _spec.skip(_cursor, n);
+            return;
+        }
+        int pos = _scheduleIndex == null ? -1 : _scheduleIndex[packState()];
+        if (pos < 0) {
+            buildSchedule();
+            pos = 0;
+        }
+        makeKeystream();
+        long target;
+        if (n < _schedule.length - pos) {
+            target = pos + n;
+        } else {
+            long cycle = _schedule.length - _scheduleTail;
+            target = _scheduleTail
+                + Math.floorMod(pos - _scheduleTail + n % cycle, cycle);
+        }
+        unpackState(_schedule[(int) target]);
+    }
+
+    /** Record in _schedule the successive positions of my rotors,
+     *  starting from the present ones, until they repeat, and in
+     *  _scheduleTail the index of the first repeated position.  Leaves
+     *  my rotors as they were. */
+    private void buildSchedule() {
+        int start = packState();
+        int[] index = new int[(int) _stateCount];
+        Arrays.fill(index, -1);
+        int[] schedule = new int[(int) _stateCount];
+        int length = 0;
+        int state = start;
+        while (index[state] < 0) {
+            index[state] = length;
+            schedule[length] = state;
+            length += 1;
+            _spec.step(_cursor);
+            state = packState();
+        }
+        _scheduleTail = index[state];
+        _schedule = Arrays.copyOf(schedule, length);
+        _scheduleIndex = index;
+        _keystream = null;
+        _keystreamFull = false;
+        unpackState(start);
+    }
+
+    /** Return the settings of my rotating rotors as one number whose
+     *  digits, in base alphabet size, are those settings from left to
+     *  right. */
+    private int packState() {
+        int state = 0;
+        for (int idx = 0; idx < numRotors(); idx++) {
+            if (_cursor.rotating(idx)) {
+                state = state * _alphabet.size() + _cursor.setting(idx);
+            }
+        }
+        return state;
+    }
+
+    /** Set my rotating rotors to the settings packed in STATE, as
+     *  returned by packState. */
+    private void unpackState(int state) {
+        for (int idx = numRotors() - 1; idx >= 0; idx--) {
+            if (_cursor.rotating(idx)) {
+                _cursor.setSetting(idx, state % _alphabet.size());
+                state /= _alphabet.size();
+            }
         }
-        int plugout = _plugboard.permute(curstatus);
-        return plugout;
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        String nmsg = "";
-        for (int i = 0; i <  msg.length(); i++) {
-            char cmsg = msg.charAt(i);
-            if (cmsg == ' ') {
-                nmsg = nmsg + " ";
-                continue;
+        char[] buf = msg.toCharArray();
+        convert(buf, 0, buf.length, buf);
+        return new String(buf);
+    }
+
+    /** Store in OUT[OFF .. OFF+LEN-1] the encoding/decoding of
+     *  IN[OFF .. OFF+LEN-1], updating the state of the rotors
+     *  accordingly.  Spaces are copied through unchanged.  IN and OUT
+     *  may be the same array, in which case it is converted in place. */
+    void convert(char[] in, int off, int len, char[] out) {
+        convert(in, off, out, off, len);
+    }
+
+    /** Convert the characters remaining in IN into OUT, as for
+     *  convert(char[], int, int, char[]), stopping when either buffer
+     *  is exhausted.  Advances the positions of both buffers past the
+     *  characters consumed and produced. */
+    void convert(CharBuffer in, CharBuffer out) {
+        int len = Math.min(in.remaining(), out.remaining());
+        if (in.hasArray() && out.hasArray()) {
+            convert(in.array(), in.arrayOffset() + in.position(),
+                    out.array(), out.arrayOffset() + out.position(), len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                out.put(out.position() + i,
+                        convertChar(in.get(in.position() + i)));
             }
-            int cmsgnum = _alphabet.toInt(cmsg);
-            int newcmsgnum = convert(cmsgnum);
-            char newcmsg = _alphabet.toChar(newcmsgnum);
-            nmsg = nmsg + newcmsg;
         }
-        return nmsg;
+        in.position(in.position() + len);
+        out.position(out.position() + len);
+    }
+
+    /** Store in OUT[OUTOFF .. OUTOFF+LEN-1] the encoding/decoding of
+     *  IN[INOFF .. INOFF+LEN-1]. */
+    private void convert(char[] in, int inOff, char[] out, int outOff,
+                         int len) {
+        for (int i = 0; i < len; i++) {
+            out[outOff + i] = convertChar(in[inOff + i]);
+        }
     }
+
+    /** Returns the encoding/decoding of the message character CMSG,
+     *  which is a space or in my alphabet. */
+    private char convertChar(char cmsg) {
+        if (cmsg == ' ') {
+            return ' ';
+        }
+        return _alphabet.toChar(convert(_alphabet.toInt(cmsg)));
+    }
+
+    /** Store in OUT[OUTOFF .. OUTOFF+LEN-1] the conversion of
+     *  IN[INOFF .. INOFF+LEN-1] as running text, as for filter(char).
+     *  IN and OUT may be the same array. */
+    void filter(char[] in, int inOff, char[] out, int outOff, int len) {
+        for (int i = 0; i < len; i++) {
+            out[outOff + i] = filter(in[inOff + i]);
+        }
+    }
+
+    /** Return the conversion of C as a character of running text:
+     *  characters of my alphabet other than space are converted,
+     *  advancing my rotors, and all others, such as line terminators
+     *  and punctuation, are returned unchanged without moving them. */
+    char filter(char c) {
+        int index = c == ' ' ? -1 : _alphabet.index(c);
+        if (index < 0) {
+            return c;
+        }
+        return _alphabet.toChar(convert(index));
+    }
+
     /** Check if the moving and nonmoving rotors are in the right position.*/
     void checkusedrotor() {
-        for (int i = 0; i < _rotorsused.size(); i++) {
-            if (i >= 1 && i < numRotors() - numPawls()) {
-                if (_rotorsused.get(i).rotates()) {
-                    throw error("Moving rotor in wrong position");
-                }
-            }
-            if (i >= numRotors() - numPawls()) {
-                if (!_rotorsused.get(i).rotates()) {
-                    throw error("Nonmoving rotor in wrong position");
-                }
-            }
-        }
+        _spec.checkusedrotor(_cursor);
     }
 
+    /** My description, shared with other machines. */
+    private final MachineSpec _spec;
+
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
 
-    /** number of pawls.*/
-    private final int _pawls;
+    /** The rotors in my slots and their positions, and my plugboard. */
+    private final Cursor _cursor;
+
+    /** Number of distinct snapshots, or -1 if they do not fit in a
+     *  long. */
+    private final long _snapshotLimit;
+
+    /** Largest number of rotor positions for which seek records the
+     *  period of my rotors. */
+    private static final int SCHEDULE_LIMIT = 1 << 22;
+
+    /** Number of combinations of my rotating rotors' settings, or -1 if
+     *  that exceeds SCHEDULE_LIMIT. */
+    private long _stateCount = -1;
+
+    /** Successive packed positions of my rotors, ending just before the
+     *  first position that repeats, or null if not yet recorded. */
+    private int[] _schedule;
+
+    /** Index in _schedule of each packed position, or -1. */
+    private int[] _scheduleIndex;
+
+    /** Index in _schedule at which the repeating cycle starts. */
+    private int _scheduleTail;
+
+    /** Largest size in bytes of _keystream, or 0 to use none. */
+    private long _keystreamLimit;
+
+    /** For each index P into _schedule, the conversion of each index C
+     *  when my rotors are at position P, once filled in; or null if not
+     *  in use.  Shared with copies of me made while I have my key. */
+    private KeystreamTable _keystream;
+
+    /** True iff _keystream would exceed _keystreamLimit for the
+     *  present _schedule. */
+    private boolean _keystreamFull;
+
+    /** Index in _schedule of my rotors' position while converting
+     *  through _keystream, or -1 if my rotors' settings are current. */
+    private int _position = -1;
+
+    /** Number of keystrokes converted rotor by rotor with one key
+     *  before a PackedCore is made for it. */
+    private static final int CORE_THRESHOLD = 4096;
+
+    /** Tables for converting with my present key, or null if not yet
+     *  made.  Shared with my copies, as it never changes. */
+    private PackedCore _core;
+
+    /** True iff my present key cannot be converted with a
+     *  PackedCore. */
+    private boolean _coreRejected;
+
+    /** Keystrokes converted rotor by rotor with my present key. */
+    private int _slowKeys;
+
+    /** True iff _state, not my cursor, holds my rotors' settings. */
+    private boolean _packed;
+
+    /** My rotors' settings, as packed by _core, while _packed. */
+    private long _state;
+
+    /** The stack of _core for _stackKey. */
+    private int[] _stack;
 
-    /**number of rotors.*/
-    private final int _numRotors;
+    /** The stackKey of the positions for which _stack was found, or
+     *  -1. */
+    private long _stackKey = -1;
 
-    /** arraylist of all rotors.*/
-    private final Collection<Rotor> _allRotors;
+    /** Space in which _core composes stacks that it does not keep. */
+    private int[] _stackScratch;
 
-    /**arraylist of the used rotors.*/
-    private ArrayList<Rotor> _rotorsused;
+    /** Rotor advances made with _core, not yet taken. */
+    private long _advances;
 
-    /** plugboard permutatations.*/
-    private Permutation _plugboard;
+    /** Double steps made with _core, not yet taken. */
+    private long _doubleSteps;
 
 }
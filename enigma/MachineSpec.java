@@ -0,0 +1,261 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The unchanging description of an enigma machine: its alphabet, its
+ *  numbers of slots and pawls, and the rotors available to it, with
+ *  their precomputed wiring.  A spec holds no positions; those live in
+ *  Cursors, and a spec only reads its rotors' wiring, so one spec may
+ *  serve any number of threads at once without locking.
+ *  @author Fourth Teerakapibal
+ */
+final class MachineSpec {
+
+    /** A spec with alphabet ALPHA, 1 < NUMROTORS rotor slots, and
+     *  0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains all the
+     *  available rotors. */
+    MachineSpec(Alphabet alpha, int numRotors, int pawls,
+                Collection<Rotor> allRotors) {
+        this(alpha, numRotors, pawls, new RotorRegistry(allRotors));
+    }
+
+    /** A spec with alphabet ALPHA, 1 < NUMROTORS rotor slots, and
+     *  0 <= PAWLS < NUMROTORS pawls, whose available rotors are those in
+     *  REGISTRY. */
+    MachineSpec(Alphabet alpha, int numRotors, int pawls,
+                RotorRegistry registry) {
+        _alphabet = alpha;
+        _numRotors = numRotors;
+        _pawls = pawls;
+        _registry = registry;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots I have. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number pawls (and thus rotating rotors) I have. */
+    int numPawls() {
+        return _pawls;
+    }
+
+    /** Return a new cursor for me, with empty slots. */
+    Cursor newCursor() {
+        return new Cursor(_numRotors);
+    }
+
+    /** Return every choice of available rotors for my slots that
+     *  insertRotors would accept: a reflector in slot 0, fixed rotors in
+     *  the slots without pawls, and moving rotors in the rest, with no
+     *  rotor used twice.  Each is listed reflector first. */
+    List<Rotor[]> rotorOrders() {
+        List<Rotor[]> orders = new ArrayList<>();
+        addOrders(orders, new Rotor[_numRotors], 0);
+        return orders;
+    }
+
+    /** Add to ORDERS every completion of ORDER, whose slots before IDX
+     *  are filled, as for rotorOrders. */
+    private void addOrders(List<Rotor[]> orders, Rotor[] order, int idx) {
+        if (idx == order.length) {
+            orders.add(order.clone());
+            return;
+        }
+        int firstMoving = _numRotors - _pawls;
+        for (int k = 0; k < _registry.size(); k += 1) {
+            Rotor rotor = _registry.get(k);
+            boolean fits;
+            if (idx == 0) {
+                fits = rotor.reflecting();
+            } else if (idx < firstMoving) {
+                fits = !rotor.reflecting() && !rotor.rotates();
+            } else {
+                fits = rotor.rotates();
+            }
+            for (int slot = 0; fits && slot < idx; slot += 1) {
+                fits = order[slot] != rotor;
+            }
+            if (fits) {
+                order[idx] = rotor;
+                addOrders(orders, order, idx + 1);
+            }
+        }
+    }
+
+    /** Return the available rotor named NAME, or null if there is
+     *  none. */
+    Rotor rotor(String name) {
+        return _registry.get(name);
+    }
+
+    /** Return my available rotors. */
+    RotorRegistry registry() {
+        return _registry;
+    }
+
+    /** Set the slots of CURSOR to the rotors named ROTORS from my set of
+     *  available rotors (ROTORS[0] names the reflector), all at their 0
+     *  setting. */
+    void insertRotors(Cursor cursor, String[] rotors) {
+        assert rotors.length == numRotors();
+        for (int idx = 0; idx < numRotors(); idx++) {
+            Rotor rotor = rotor(rotors[idx]);
+            if (rotor == null) {
+                throw error("Misnamed rotor");
+            }
+            cursor.setRotor(idx, rotor);
+        }
+        if (!cursor.rotor(0).reflecting()) {
+            throw error("First rotor must be a reflector");
+        }
+    }
+
+    /** Set the rotors of CURSOR according to SETTING, which must be a
+     *  string of numRotors()-1 characters in my alphabet, and their ring
+     *  offsets according to OFFSET, a string of as many upper-case
+     *  letters.  The first letter of each refers to the leftmost rotor
+     *  (not counting the reflector). */
+    void setRotors(Cursor cursor, String setting, String offset) {
+        for (int idx = 1; idx < numRotors(); idx++) {
+            char posn = setting.charAt(idx - 1);
+            char ring = offset.charAt(idx - 1);
+            cursor.setSetting(idx, _alphabet.toInt(posn));
+            cursor.setOffset(idx, OFFSET_ALPHABET.toInt(ring));
+        }
+    }
+
+    /** Check that the moving and nonmoving rotors of CURSOR are in the
+     *  right slots. */
+    void checkusedrotor(Cursor cursor) {
+        for (int i = 0; i < numRotors(); i++) {
+            if (i >= 1 && i < numRotors() - numPawls()) {
+                if (cursor.rotating(i)) {
+                    throw error("Moving rotor in wrong position");
+                }
+            }
+            if (i >= numRotors() - numPawls()) {
+                if (!cursor.rotating(i)) {
+                    throw error("Nonmoving rotor in wrong position");
+                }
+            }
+        }
+    }
+
+    /** Returns the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1) with CURSOR, after first
+     *  advancing it. */
+    int convert(Cursor cursor, int c) {
+        step(cursor);
+        return path(cursor, c);
+    }
+
+    /** Returns the result of passing index C through the plugboard, the
+     *  rotors to the reflector and back, and the plugboard of CURSOR,
+     *  without advancing it. */
+    int path(Cursor cursor, int c) {
+        int curstatus = cursor.plugboard().permute(c);
+        for (int idx = numRotors() - 1; idx >= 0; idx--) {
+            curstatus = cursor.rotor(idx).convertForward(curstatus,
+                                                         cursor.row(idx));
+        }
+        for (int idx = 1; idx < numRotors(); idx++) {
+            curstatus = cursor.rotor(idx).convertBackward(curstatus,
+                                                          cursor.row(idx));
+        }
+        return cursor.plugboard().permute(curstatus);
+    }
+
+    /** Advance the rotors of CURSOR as for one keystroke.  The rightmost
+     *  rotor always moves.  A rotor whose right neighbor is at a notch
+     *  moves, and so does that neighbor (the double step), unless the
+     *  rotor has no pawl.  All notches are read before any rotor
+     *  moves. */
+    void step(Cursor cursor) {
+        boolean[] moves = cursor.moves();
+        int last = numRotors() - 1;
+        int firstpawl = numRotors() - numPawls() - 1;
+        for (int idx = 0; idx < last; idx++) {
+            moves[idx] = false;
+        }
+        moves[last] = true;
+        for (int idx = last - 1; idx >= 0; idx--) {
+            if (cursor.rotor(idx + 1).atNotch(cursor.setting(idx + 1))) {
+                if (cursor.rotating(idx)) {
+                    moves[idx] = true;
+                    moves[idx + 1] = true;
+                    if (idx + 1 < last) {
+                        cursor.countDoubleStep();
+                    }
+                } else if (idx != firstpawl) {
+                    moves[idx + 1] = true;
+                }
+            }
+        }
+        for (int idx = 0; idx <= last; idx++) {
+            if (moves[idx] && cursor.rotating(idx)) {
+                cursor.advance(idx);
+            }
+        }
+    }
+
+    /** Advance the rotors of CURSOR as for N keystrokes by stepping,
+     *  except that keystrokes that move only the rightmost rotor are
+     *  taken together up to the next time it reaches a notch. */
+    void skip(Cursor cursor, long n) {
+        int last = numRotors() - 1;
+        Rotor fast = cursor.rotor(last);
+        while (n > 0) {
+            if (!quiet(cursor)) {
+                step(cursor);
+                n -= 1;
+            } else if (!cursor.rotating(last)) {
+                return;
+            } else {
+                int setting = cursor.setting(last);
+                long k = Math.min(n, fast.stepsToNotch(setting));
+                cursor.setSetting(last, (int) ((setting + k) % fast.size()));
+                n -= k;
+            }
+        }
+    }
+
+    /** Return true iff the next keystroke would move only the rightmost
+     *  rotor of CURSOR. */
+    boolean quiet(Cursor cursor) {
+        int firstpawl = numRotors() - numPawls() - 1;
+        for (int idx = numRotors() - 2; idx >= 0; idx--) {
+            if (cursor.rotor(idx + 1).atNotch(cursor.setting(idx + 1))
+                && (cursor.rotating(idx) || idx != firstpawl)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Alphabet of ring settings. */
+    private static final Alphabet OFFSET_ALPHABET =
+        new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+
+    /** Common alphabet of my rotors. */
+    private final Alphabet _alphabet;
+
+    /** Number of pawls. */
+    private final int _pawls;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** All available rotors. */
+    private final RotorRegistry _registry;
+
+}
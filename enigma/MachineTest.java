@@ -1,63 +1,16 @@
 package enigma;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import static enigma.TestUtils.*;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
 
 /** Test the machine class by initializing and permutating using the machine.
  * @author Fourth Teerakapibal
  */
 
 public class MachineTest {
-    public ArrayList<Rotor> initRotor() {
-        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
-        MovingRotor i = new MovingRotor("I",
-                new Permutation("(AELTPHQXRU) (BKNW) (CMOY) (DFG) "
-                        + "(IV) (JZ) (S)",
-                        new Alphabet()), "Q");
-        MovingRotor ii = new MovingRotor("II",
-                new Permutation("(FIXVYOMW) (CDKLHUP) (ESZ) (BJ) "
-                        + "(GR) (NT) (A) (Q)",
-                        new Alphabet()), "E");
-        MovingRotor iii = new MovingRotor("III",
-                new Permutation("(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)",
-                        new Alphabet()), "V");
-        MovingRotor iv = new MovingRotor("IV",
-                new Permutation("(AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)",
-                        new Alphabet()), "J");
-        MovingRotor v = new MovingRotor("V",
-                new Permutation("(AVOLDRWFIUQ) (BZKSMNHYC) (EGTJPX)",
-                        new Alphabet()), "Z");
-        MovingRotor vi = new MovingRotor("VI",
-                new Permutation("(AJQDVLEOZWIYTS) (CGMNHFUX) (BPRK)",
-                        new Alphabet()), "ZM");
-        MovingRotor vii = new MovingRotor("VII",
-                new Permutation("(ANOUPFRIMBZTLWKSVEGCJYDHXQ)",
-                        new Alphabet()), "ZM");
-        MovingRotor viii = new MovingRotor("VIII",
-                new Permutation("(AFLSETWUNDHOZVICQ) (BKJ) (GXY) (MPR)",
-                        new Alphabet()), "ZM");
-        FixedRotor beta = new FixedRotor("Beta",
-                new Permutation("(ALBEVFCYODJWUGNMQTZSKPR) (HIX)",
-                        new Alphabet()));
-        FixedRotor gamma = new FixedRotor("Gamma",
-                new Permutation("(AFNIRLBSQWVXGUZDKMTPCOYJHE)",
-                        new Alphabet()));
-        Reflector b = new Reflector("B",
-                new Permutation("(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) "
-                        + "(LO) (MP) (RX) (SZ) (TV)",
-                        new Alphabet()));
-        Reflector c = new Reflector("C",
-                new Permutation("(AR) (BD) (CO) (EJ) (FN) (GT) (HK) (IV) "
-                        + "(LM) (PW) (QZ) (SX) (UY)",
-                        new Alphabet()));
-        rotors.add(i); rotors.add(ii); rotors.add(iii);
-        rotors.add(iv); rotors.add(v);
-        rotors.add(vi); rotors.add(vii); rotors.add(viii);
-        rotors.add(beta); rotors.add(gamma);
-        rotors.add(b); rotors.add(c);
-        return rotors;
-    }
-
     public ArrayList<Rotor> initRotor2() {
         ArrayList<Rotor> rotors = new ArrayList<Rotor>();
         MovingRotor A = new MovingRotor("I",
@@ -145,4 +98,435 @@ public class MachineTest {
 
     }
 
+    @Test
+    public void machineconvertbulk() {
+        ArrayList<Rotor> allrotors = initRotor();
+        Machine m = new Machine(new Alphabet(), 5, 3, allrotors);
+        m.insertRotors(new String[]{"B", "Beta", "III", "IV", "I"});
+        m.setRotors("AXLE", "AAAA");
+        m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                new Alphabet()));
+        char[] buf = "xxFROM HISSHOULDER HIAWATHAxx".toCharArray();
+        m.convert(buf, 2, buf.length - 4, buf);
+        assertEquals("xxQVPQ SOKOILPUBKJ ZPISFXDWxx", new String(buf));
+        CharBuffer in = CharBuffer.wrap("TOOKTHE CAMERAOFROSEWOOD");
+        CharBuffer out = CharBuffer.allocate(10);
+        m.convert(in, out);
+        assertEquals(10, in.position());
+        assertEquals("BHCNSCX NU", new String(out.array()));
+        out.clear();
+        m.convert(in, out);
+        assertEquals(20, in.position());
+        assertEquals("OAATZXSRCF", new String(out.array()));
+    }
+
+    /** Return a machine with the naval rotors named ROTORS, set to
+     *  SETTING, with the plugboard used above. */
+    private Machine navalMachine(String[] rotors, String setting) {
+        Machine m = new Machine(new Alphabet(), rotors.length,
+                rotors.length - 2, initRotor());
+        m.insertRotors(rotors);
+        m.setRotors(setting, "AAAAAAAA".substring(0, setting.length()));
+        m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                new Alphabet()));
+        return m;
+    }
+
+    /** Check that seeking N keystrokes leaves the machine with ROTORS
+     *  at SETTING in the same state as converting N characters. */
+    private void checkSeek(String[] rotors, String setting, long n) {
+        Machine stepped = navalMachine(rotors, setting);
+        Machine sought = navalMachine(rotors, setting);
+        for (long i = 0; i < n; i++) {
+            stepped.convert(0);
+        }
+        sought.seek(n);
+        assertEquals("seek " + n, stepped.convert("HELLOWORLDHELLOWORLD"),
+                sought.convert("HELLOWORLDHELLOWORLD"));
+    }
+
+    @Test
+    public void machineseek() {
+        String[] rotors = new String[]{"B", "Beta", "III", "IV", "I"};
+        for (long n : new long[]{0, 1, 16, 17, 25, 26, 676, 16900, 40000}) {
+            checkSeek(rotors, "AXLE", n);
+            checkSeek(rotors, "ADEQ", n);
+        }
+        Machine m = navalMachine(rotors, "ADEQ");
+        m.seek(3);
+        m.seek(5);
+        Machine n = navalMachine(rotors, "ADEQ");
+        n.seek(8);
+        assertEquals(n.convert("HELLOWORLD"), m.convert("HELLOWORLD"));
+        for (long big : new long[]{Long.MAX_VALUE, Long.MAX_VALUE - 7}) {
+            m = navalMachine(rotors, "ADEQ");
+            m.seek(5);
+            m.seek(big);
+            n = navalMachine(rotors, "ADEQ");
+            n.seek(5 + 16900 + big % 16900);
+            assertEquals(n.convert("HELLOWORLD"), m.convert("HELLOWORLD"));
+        }
+    }
+
+    @Test
+    public void machineseekunrecorded() {
+        String[] rotors = new String[]{"B", "VI", "V", "IV", "II", "I"};
+        for (long n : new long[]{0, 1, 17, 700, 20000}) {
+            checkSeek(rotors, "ZDEQV", n);
+        }
+    }
+
+    @Test
+    public void machineconvertparallel() {
+        String[] rotors = new String[]{"B", "Beta", "III", "IV", "I"};
+        char[] msg = new char[50000];
+        for (int i = 0; i < msg.length; i++) {
+            msg[i] = i % 7 == 3 ? ' ' : (char) ('A' + i * 31 % 26);
+        }
+        Machine seq = navalMachine(rotors, "AXLE");
+        Machine par = navalMachine(rotors, "AXLE");
+        char[] seqout = new char[msg.length];
+        char[] parout = new char[msg.length];
+        seq.convert(msg, 0, msg.length, seqout);
+        ParallelConverter.convert(par, msg, 0, msg.length, parout, 1000,
+                ForkJoinPool.commonPool());
+        assertEquals(new String(seqout), new String(parout));
+        assertEquals(seq.convert("HELLOWORLD"), par.convert("HELLOWORLD"));
+    }
+
+    @Test
+    public void machineconvertparallelunrecorded() {
+        char[] msg = new char[200000];
+        for (int i = 0; i < msg.length; i++) {
+            msg[i] = i % 7 == 3 ? ' ' : (char) ('A' + i * 31 % 26);
+        }
+        Machine[] machines = new Machine[2];
+        for (int k = 0; k < machines.length; k++) {
+            machines[k] = new Machine(new Alphabet(), 6, 5, initRotor());
+            machines[k].insertRotors(
+                new String[]{"B", "I", "II", "III", "IV", "V"});
+            machines[k].setRotors("AQEVJ", "AAAAA");
+            machines[k].setPlugboard(new Permutation("(HQ) (EX)",
+                    new Alphabet()));
+        }
+        char[] seqout = new char[msg.length];
+        char[] parout = new char[msg.length];
+        machines[0].convert(msg, 0, msg.length, seqout);
+        ParallelConverter.convert(machines[1], msg, 0, msg.length, parout,
+                1000, ForkJoinPool.commonPool());
+        assertEquals(new String(seqout), new String(parout));
+        assertEquals(machines[0].convert("HELLOWORLD"),
+                machines[1].convert("HELLOWORLD"));
+    }
+
+    @Test
+    public void machinekeystream() {
+        String[] rotors = new String[]{"B", "Beta", "III", "IV", "I"};
+        for (long limit : new long[]{1 << 24, 1000}) {
+            Machine m = navalMachine(rotors, "AXLE");
+            m.setKeystreamLimit(limit);
+            assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                    m.convert("FROMHISSHOULDERHIAWATHA"));
+            m.seek(17000);
+            Machine n = navalMachine(rotors, "AXLE");
+            n.seek(17000 + 23);
+            assertEquals(n.convert("TOOKTHECAMERAOFROSEWOOD"),
+                    m.convert("TOOKTHECAMERAOFROSEWOOD"));
+            m.setRotors("AXLE", "AAAA");
+            assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                    m.convert("FROMHISSHOULDERHIAWATHA"));
+            m.setPlugboard(new Permutation("", new Alphabet()));
+            n.setPlugboard(new Permutation("", new Alphabet()));
+            m.setRotors("AXLE", "AAAA");
+            n.setRotors("AXLE", "AAAA");
+            assertEquals(n.convert("HELLOWORLDHELLOWORLD"),
+                    m.convert("HELLOWORLDHELLOWORLD"));
+        }
+    }
+
+    @Test
+    public void sharedkeystream() {
+        String[] rotors = new String[]{"B", "Beta", "III", "IV", "I"};
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        String expected = navalMachine(rotors, "AXLE").convert(msg);
+        Machine m = navalMachine(rotors, "AXLE");
+        m.setKeystreamLimit(1 << 24);
+        m.seek(0);
+        Machine first = m.copy();
+        Machine second = m.copy();
+        assertEquals(expected, first.convert(msg));
+        first.setRotors("QQQQ", "AAAA");
+        first.convert(msg);
+        assertEquals(expected, second.convert(msg));
+        assertEquals(expected, m.convert(msg));
+    }
+
+    @Test
+    public void machinesshareconfig() {
+        ArrayList<Rotor> allrotors = initRotor();
+        MachineSpec spec = new MachineSpec(new Alphabet(), 5, 3, allrotors);
+        Machine m = new Machine(spec);
+        Machine n = new Machine(spec);
+        for (Machine x : new Machine[]{m, n}) {
+            x.insertRotors(new String[]{"B", "Beta", "III", "IV", "I"});
+            x.setRotors("AXLE", "AAAA");
+            x.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                    new Alphabet()));
+        }
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                m.convert("FROMHISSHOULDERHIAWATHA"));
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                n.convert("FROMHISSHOULDERHIAWATHA"));
+        for (Rotor rotor : allrotors) {
+            assertEquals(0, rotor.setting());
+        }
+    }
+
+    @Test
+    public void rotorregistry() {
+        ArrayList<Rotor> allrotors = initRotor();
+        allrotors.add(new FixedRotor("I",
+                new Permutation("", new Alphabet())));
+        RotorRegistry registry = new RotorRegistry(allrotors);
+        assertEquals(allrotors.size(), registry.size());
+        assertEquals(0, registry.indexOf("I"));
+        assertSame(allrotors.get(0), registry.get("I"));
+        assertEquals(-1, registry.indexOf("IX"));
+        assertEquals(null, registry.get("IX"));
+        for (int k = 1; k < allrotors.size() - 1; k++) {
+            assertSame(allrotors.get(k), registry.get(k));
+            assertEquals(k, registry.indexOf(allrotors.get(k).name()));
+        }
+    }
+
+    @Test
+    public void configimage() throws java.io.IOException {
+        java.io.File file = java.io.File.createTempFile("enigma", ".img");
+        try {
+            MachineSpec spec =
+                new MachineSpec(new Alphabet(), 5, 3, initRotor());
+            ConfigImage.write(spec, file.getPath());
+            assertTrue(ConfigImage.isImage(file.getPath()));
+            MachineSpec loaded = ConfigImage.read(file.getPath());
+            assertEquals(5, loaded.numRotors());
+            assertEquals(3, loaded.numPawls());
+            assertEquals(spec.registry().size(), loaded.registry().size());
+            assertEquals("(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ)",
+                    loaded.rotor("I").permutation().toString());
+            for (MachineSpec s : new MachineSpec[]{spec, loaded}) {
+                Machine m = new Machine(s);
+                m.insertRotors(new String[]{"B", "Beta", "III", "IV", "I"});
+                m.setRotors("AXLE", "AAAA");
+                m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                        new Alphabet()));
+                assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                        m.convert("FROMHISSHOULDERHIAWATHA"));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void configimagechecked() throws java.io.IOException {
+        java.io.File file = java.io.File.createTempFile("enigma", ".img");
+        try {
+            ConfigImage.write(new MachineSpec(new Alphabet(), 5, 3,
+                                              initRotor()), file.getPath());
+            byte[] image = java.nio.file.Files.readAllBytes(file.toPath());
+            int pawls = 4 + 4 + 4 + 2 * 26 + 4;
+            int forward = pawls + 4 + 4 + 1 + 4 + 2 * "I".length();
+            byte[] swapped = image.clone();
+            swapped[forward + 1] = image[forward + 3];
+            swapped[forward + 3] = image[forward + 1];
+            byte[] badPawls = image.clone();
+            badPawls[pawls + 3] = 5;
+            for (byte[] bad : new byte[][]{swapped, badPawls}) {
+                java.nio.file.Files.write(file.toPath(), bad);
+                try {
+                    ConfigImage.read(file.getPath());
+                    fail("read a corrupt image");
+                } catch (EnigmaException excp) {
+                    assertTrue(excp.getMessage().startsWith(
+                        bad == swapped ? "bad table" : "Need Number"));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void configimagemagic() throws java.io.IOException {
+        java.io.File file = java.io.File.createTempFile("enigma", ".conf");
+        try {
+            java.nio.file.Files.write(file.toPath(),
+                "ENGCABDFHIJKLMNOPQRSTUVWXYZ\n5 3\n".getBytes("US-ASCII"));
+            assertFalse(ConfigImage.isImage(file.getPath()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void stepcounts() {
+        Machine m = new Machine(new Alphabet(), 5, 3, initRotor());
+        m.insertRotors(new String[]{"B", "Beta", "III", "IV", "I"});
+        m.setRotors("AAJA", "AAAA");
+        m.setPlugboard(new Permutation("", new Alphabet()));
+        m.convert("AA");
+        assertEquals(4, m.takeAdvances());
+        assertEquals(1, m.takeDoubleSteps());
+        assertEquals(0, m.takeAdvances());
+
+        Metrics metrics = Metrics.get();
+        long setups = metrics.getSetups();
+        long steps = metrics.getRotorSteps();
+        metrics.addSetup();
+        metrics.addSteps(4, 1);
+        metrics.addError(new EnigmaException("Bad setting: X"));
+        metrics.addError(EnigmaException.error("Bad setting: %s", "Y"));
+        assertEquals(setups + 1, metrics.getSetups());
+        assertEquals(steps + 4, metrics.getRotorSteps());
+        assertTrue(metrics.getErrors().get("Bad setting: %s") >= 1);
+    }
+
+    @Test
+    public void metricsregistration() throws Exception {
+        javax.management.MBeanServer server =
+            java.lang.management.ManagementFactory.getPlatformMBeanServer();
+        javax.management.ObjectName name =
+            new javax.management.ObjectName(Metrics.OBJECT_NAME);
+        String jmx = System.getProperty("enigma.jmx");
+        System.setProperty("enigma.jmx", "true");
+        try {
+            Metrics.register();
+            assertTrue(server.isRegistered(name));
+            assertFalse(Metrics.register());
+            Metrics.get().addSetup();
+        } finally {
+            if (jmx == null) {
+                System.clearProperty("enigma.jmx");
+            } else {
+                System.setProperty("enigma.jmx", jmx);
+            }
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+    }
+
+    @Test
+    public void snapshotrestore() {
+        Machine m = new Machine(new Alphabet(), 5, 3, initRotor());
+        m.insertRotors(new String[]{"B", "Beta", "III", "IV", "I"});
+        m.setRotors("AXLE", "BCDE");
+        m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                new Alphabet()));
+        m.convert("FROMHISSHOULDER");
+        long state = m.snapshot();
+        String rest = m.convert("HIAWATHATOOKTHECAMERAOFROSEWOOD");
+        m.restore(state);
+        assertEquals(state, m.snapshot());
+        assertEquals(rest, m.convert("HIAWATHATOOKTHECAMERAOFROSEWOOD"));
+
+        Machine other = m.copy();
+        other.setRotors("QQQQ", "AAAA");
+        other.setKeystreamLimit(1 << 24);
+        other.convert("XYZZY");
+        other.restore(state);
+        assertEquals(rest, other.convert("HIAWATHATOOKTHECAMERAOFROSEWOOD"));
+
+        try {
+            m.restore(-1);
+            fail("restored a negative snapshot");
+        } catch (EnigmaException excp) {
+            return;
+        }
+    }
+
+    @Test
+    public void restorefixedsetting() {
+        Permutation plugboard = new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                new Alphabet());
+        String[] rotors = new String[]{"B", "Beta", "III", "IV", "I"};
+        Machine ref = new Machine(new Alphabet(), 5, 3, initRotor());
+        ref.insertRotors(rotors);
+        ref.setRotors("AXLE", "BCDE");
+        ref.setPlugboard(plugboard);
+        long state = ref.snapshot();
+        String msg = "HIAWATHATOOKTHECAMERAOFROSEWOOD";
+        String expected = ref.convert(msg);
+
+        Machine packed = new Machine(new Alphabet(), 5, 3, initRotor());
+        packed.insertRotors(rotors);
+        packed.setRotors("QXLE", "BCDE");
+        packed.setPlugboard(plugboard);
+        packed.convert("A".repeat(10000));
+        packed.restore(state);
+        assertEquals(expected, packed.convert(msg));
+
+        Machine table = new Machine(new Alphabet(), 5, 3, initRotor());
+        table.insertRotors(rotors);
+        table.setRotors("QXLE", "BCDE");
+        table.setPlugboard(plugboard);
+        table.setKeystreamLimit(1 << 24);
+        table.convert("XYZZY");
+        table.restore(state);
+        assertEquals(expected, table.convert(msg));
+    }
+
+    @Test
+    public void packedcore() {
+        MachineSpec spec = new MachineSpec(new Alphabet(), 5, 3, initRotor());
+        String[] rotors = new String[]{"B", "Beta", "III", "IV", "I"};
+        Permutation plugboard = new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                new Alphabet());
+        Cursor cursor = spec.newCursor();
+        spec.insertRotors(cursor, rotors);
+        spec.setRotors(cursor, "AXJE", "BCDE");
+        cursor.setPlugboard(plugboard);
+        PackedCore core = new PackedCore(spec, cursor);
+        long state = core.pack(cursor);
+
+        Machine m = new Machine(spec);
+        m.insertRotors(rotors);
+        m.setRotors("AXJE", "BCDE");
+        m.setPlugboard(plugboard);
+        char[] text = new char[20000];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (char) ('A' + (i * 7) % 26);
+        }
+        String converted = m.convert(new String(text));
+        for (int i = 0; i < text.length; i++) {
+            int expected = spec.convert(cursor, text[i] - 'A');
+            state = core.advance(state, core.moves(state));
+            assertEquals("at " + i, expected, core.path(state, text[i] - 'A',
+                    core.stack(state, new int[26])));
+            assertEquals("at " + i, core.pack(cursor), state);
+            assertEquals("at " + i, 'A' + expected, converted.charAt(i));
+        }
+        assertEquals(cursor.takeAdvances(), m.takeAdvances());
+        assertEquals(cursor.takeDoubleSteps(), m.takeDoubleSteps());
+        assertEquals(core.pack(cursor), core.pack(m.cursor()));
+    }
+
+    @Test
+    public void unsharedstacks() {
+        MachineSpec spec = new MachineSpec(new Alphabet(), 6, 5, initRotor());
+        String[] rotors = new String[]{"B", "I", "II", "III", "IV", "V"};
+        Cursor cursor = spec.newCursor();
+        spec.insertRotors(cursor, rotors);
+        spec.setRotors(cursor, "QEVJZ", "ABCDE");
+        cursor.setPlugboard(new Permutation("(AZ)", new Alphabet()));
+        Machine m = new Machine(spec);
+        m.insertRotors(rotors);
+        m.setRotors("QEVJZ", "ABCDE");
+        m.setPlugboard(new Permutation("(AZ)", new Alphabet()));
+        for (int i = 0; i < 10000; i++) {
+            assertEquals("at " + i, spec.convert(cursor, i % 26),
+                         m.convert(i % 26));
+        }
+    }
+
 }
@@ -1,12 +1,24 @@
 package enigma;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static enigma.EnigmaException.*;
 
@@ -23,12 +35,23 @@ public final class Main {
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.  The configuration file may instead be an
+     *  image compiled from one by "compile CONFIG IMAGE", which writes
+     *  the configuration in the file CONFIG to the file IMAGE.  With
+     *  "serve CONFIG ADDRESS", converts instead for clients of a Server
+     *  listening on ADDRESS, until killed. */
     public static void main(String... args) {
         try {
-            new Main(args).process();
+            if (args.length > 0 && args[0].equals("compile")) {
+                compile(args);
+            } else if (args.length > 0 && args[0].equals("serve")) {
+                serve(args);
+            } else {
+                new Main(args).process();
+            }
             return;
         } catch (EnigmaException excp) {
+            Metrics.get().addError(excp);
             System.err.printf("Error: %s%n", excp.getMessage());
         }
         System.exit(1);
@@ -40,23 +63,90 @@ public final class Main {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        _config = getInput(args[0]);
+        if (ConfigImage.isImage(args[0])) {
+            _image = args[0];
+        } else {
+            _config = getInput(args[0]);
+        }
 
         if (args.length > 1) {
-            _input = getInput(args[1]);
+            _input = new ChunkedInput(args[1]);
         } else {
-            _input = new Scanner(System.in);
+            _input = new ChunkedInput(System.in);
         }
 
+        WritableByteChannel out;
         if (args.length > 2) {
-            _output = getOutput(args[2]);
+            out = getOutput(args[2]);
         } else {
-            _output = System.out;
+            out = new FileOutputStream(FileDescriptor.out).getChannel();
         }
+        _output = new GroupFormatter(out, GROUP_SIZE);
+    }
+
+    /** Converse with machines described by SPEC, reading from INPUT and
+     *  writing to OUTPUT. */
+    private Main(MachineSpec spec, ChunkedInput input,
+                 GroupFormatter output) {
+        _alphabet = spec.alphabet();
+        _registry = spec.registry();
+        _usedRotors = new BitSet(_registry.size());
+        _input = input;
+        _output = output;
+    }
+
+    /** Read the configuration with only _config set. */
+    private Main(Scanner config) {
+        _config = config;
+    }
+
+    /** Compile the configuration file ARGS[1] into the image file
+     *  ARGS[2], where ARGS[0] is "compile". */
+    private static void compile(String[] args) {
+        if (args.length != 3) {
+            throw error("Usage: compile CONFIG IMAGE");
+        }
+        Machine machine = new Main(getInput(args[1])).readConfig();
+        ConfigImage.write(machine.spec(), args[2]);
+    }
+
+    /** Serve clients on the address ARGS[2] with the configuration in
+     *  the file ARGS[1], where ARGS[0] is "serve". */
+    private static void serve(String[] args) {
+        if (args.length != 3) {
+            throw error("Usage: serve CONFIG ADDRESS");
+        }
+        MachineSpec spec;
+        if (ConfigImage.isImage(args[1])) {
+            spec = ConfigImage.read(args[1]);
+        } else {
+            spec = new Main(getInput(args[1])).readConfig().spec();
+        }
+        Server server = new Server(spec, args[2]);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.serve();
+    }
+
+    /** Converse with a client of a Server, reading input in the format
+     *  of main's from IN and writing the converted message lines to OUT
+     *  as each is read, with machines described by SPEC.  Reports an
+     *  error in the input on OUT, ending the conversation. */
+    static void converse(MachineSpec spec, InputStream in,
+                         WritableByteChannel out) {
+        Main main = new Main(spec, new ChunkedInput(in),
+                             new GroupFormatter(out, GROUP_SIZE));
+        try {
+            main.converse(new Machine(spec));
+        } catch (EnigmaException excp) {
+            Metrics.get().addError(excp);
+            main._output.append(String.format("Error: %s%n",
+                                              excp.getMessage()).getBytes());
+        }
+        main._output.flush();
     }
 
     /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    private static Scanner getInput(String name) {
         try {
             return new Scanner(new File(name));
         } catch (IOException excp) {
@@ -64,10 +154,10 @@ public final class Main {
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Return a channel writing to the file named NAME. */
+    private WritableByteChannel getOutput(String name) {
         try {
-            return new PrintStream(new File(name));
+            return new FileOutputStream(name).getChannel();
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
@@ -75,42 +165,518 @@ public final class Main {
 
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
-     *  results to _output. */
-    private void process() {
+     *  results to _output.  Each setting line starts a session that is
+     *  independent of all others, so sessions are converted concurrently
+     *  on copies of the machine and their output is printed in input
+     *  order.  A session too long to hold in memory is instead read,
+     *  checked, converted and printed a chunk at a time through a
+     *  Pipeline, once all sessions before it are printed. */
+    void process() {
+        long start = System.nanoTime();
         Machine machine = readConfig();
+        Metrics.get().addParseNanos(System.nanoTime() - start);
+        char[] chunk = new char[CHUNK_SIZE];
+        _pool = Executors.newFixedThreadPool(WORKERS, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        Session session = null;
         int count = 0;
+        int pending = -1;
+        try {
+            while (pending >= 0 || _input.hasNextLine()) {
+                int n = pending >= 0 ? pending : _input.readLinePart(chunk);
+                pending = -1;
+                if (count == 0 && (n == 0 || chunk[0] != '*')) {
+                    throw error("Input must start with a setting");
+                }
+                count += 1;
+                if (n > 0 && chunk[0] == '*') {
+                    submit(session);
+                    String settings = _input.readRestOfLine(chunk, n);
+                    try {
+                        configure(machine, settings);
+                    } catch (EnigmaException excp) {
+                        printPending(0);
+                        throw excp;
+                    }
+                    session = new Session(machine.copy());
+                } else if (!session.add(chunk, n)) {
+                    printPending(0);
+                    pending = session.runPipelined(chunk);
+                    session = null;
+                }
+            }
+            submit(session);
+            printPending(0);
+        } finally {
+            _pool.shutdownNow();
+            _output.flush();
+            _input.close();
+        }
+    }
+
+    /** Convert the input to MACHINE one line at a time, flushing the
+     *  output of each message line as it is converted, for a client
+     *  waiting on it. */
+    private void converse(Machine machine) {
+        char[] chunk = new char[CHUNK_SIZE];
+        boolean started = false;
         while (_input.hasNextLine()) {
-            String command = _input.nextLine();
-            String[] comlst = command.split("\\s+");
-            if (count == 0 && !command.substring(0, 1).equals("*")) {
+            int n = _input.readLinePart(chunk);
+            if (n > 0 && chunk[0] == '*') {
+                configure(machine, _input.readRestOfLine(chunk, n));
+                started = true;
+            } else if (!started) {
                 throw error("Input must start with a setting");
-            }
-            count += 1;
-            if (command.equals("")) {
-                _output.println();
-                continue;
-            } else if (command.substring(0, 1).equals("*")) {
-                setUp(machine, command);
             } else {
-                checkmsgalph(command);
-                String out = machine.convert(command);
-                printMessageLine(out);
+                processMessageLine(machine, chunk, n);
+                _output.flush();
+            }
+        }
+    }
+
+    /** Set MACHINE according to SETTINGS, as for setUp, recording the
+     *  time taken in Metrics. */
+    private void configure(Machine machine, String settings) {
+        long start = System.nanoTime();
+        setUp(machine, settings);
+        Metrics.get().addParseNanos(System.nanoTime() - start);
+        Metrics.get().addSetup();
+    }
+
+    /** Start converting SESSION, if it is not null, on _pool, first
+     *  printing earlier sessions if too many are waiting. */
+    private void submit(Session session) {
+        if (session != null) {
+            printPending(MAX_PENDING - 1);
+            _pending.add(_pool.submit(session));
+        }
+    }
+
+    /** Print the output of the oldest waiting sessions, in order, until
+     *  at most LEFT remain, waiting for each to finish.  Reports the
+     *  first error in a session after printing its output up to that
+     *  error. */
+    private void printPending(int left) {
+        while (_pending.size() > left) {
+            Session done;
+            try {
+                done = _pending.remove().get();
+            } catch (InterruptedException excp) {
+                throw error("interrupted while converting");
+            } catch (ExecutionException excp) {
+                if (excp.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) excp.getCause();
+                }
+                if (excp.getCause() instanceof Error) {
+                    throw (Error) excp.getCause();
+                }
+                throw error("could not convert: %s", excp.getCause());
+            }
+            _output.append(done.output());
+            if (done.failure() != null) {
+                throw done.failure();
+            }
+        }
+    }
+
+    /** Convert and print the message line whose first N characters are
+     *  in CHUNK, reading the remainder of the line from _input. */
+    private void processMessageLine(Machine machine, char[] chunk, int n) {
+        while (true) {
+            convertPart(machine, chunk, n, _output);
+            if (_input.atLineEnd()) {
+                break;
+            }
+            n = _input.readLinePart(chunk);
+        }
+        _output.endLine();
+        Metrics.get().addMessage();
+    }
+
+    /** Check the first N characters of MSG, part of a message line,
+     *  convert them with MACHINE, and write them to OUT, recording the
+     *  work done in Metrics. */
+    private void convertPart(Machine machine, char[] msg, int n,
+                             GroupFormatter out) {
+        encryptPart(machine, msg, n);
+        formatPart(msg, n, out);
+    }
+
+    /** Check the first N characters of MSG, part of a message line, and
+     *  convert them in place with MACHINE, recording the work done in
+     *  Metrics. */
+    private void encryptPart(Machine machine, char[] msg, int n) {
+        int letters = checkmsgalph(msg, n);
+        long start = System.nanoTime();
+        machine.convert(msg, 0, n, msg);
+        Metrics metrics = Metrics.get();
+        metrics.addEncrypted(letters, System.nanoTime() - start);
+        metrics.addSteps(machine.takeAdvances(), machine.takeDoubleSteps());
+    }
+
+    /** Write the first N characters of MSG, a converted part of a
+     *  message line, to OUT, recording the time taken in Metrics. */
+    private void formatPart(char[] msg, int n, GroupFormatter out) {
+        long start = System.nanoTime();
+        out.write(msg, 0, n);
+        Metrics.get().addFormatNanos(System.nanoTime() - start);
+    }
+
+    /** The message lines following one setting line, gathered so that
+     *  they can be converted apart from the rest of the input. */
+    private class Session implements Callable<Session> {
+
+        /** A session converted by MACHINE, set up for it alone. */
+        Session(Machine machine) {
+            _machine = machine;
+        }
+
+        /** Add the first N characters in CHUNK, the start of the next
+         *  line, and the rest of that line from _input.  Returns false,
+         *  leaving the line partly read, if the session has grown too
+         *  long to hold, in which case it must be finished with
+         *  runPipelined. */
+        boolean add(char[] chunk, int n) {
+            if (_text.length() + n > SESSION_LIMIT) {
+                _partial = n;
+                return false;
+            }
+            _text.append(chunk, 0, n);
+            while (!_input.atLineEnd()) {
+                n = _input.readLinePart(chunk);
+                if (_text.length() + n > SESSION_LIMIT) {
+                    _partial = n;
+                    return false;
+                }
+                _text.append(chunk, 0, n);
+            }
+            _text.append('\n');
+            return true;
+        }
+
+        /** Convert and print directly to _output, through a Pipeline,
+         *  my lines; then the line that add refused: its start in _text,
+         *  its next characters, which are still in CHUNK, and the rest
+         *  of it from _input; and then the message lines that follow it
+         *  in _input.  Stops at the next setting line, returning the
+         *  number of its first characters, which are left in CHUNK, or
+         *  at the end of input, returning -1.  If reading fails, what
+         *  was read before the failure is printed first. */
+        int runPipelined(char[] chunk) {
+            Pipeline pipeline = new Pipeline(_machine);
+            try {
+                int i = 0;
+                while (i < _text.length()) {
+                    int eol = _text.indexOf("\n", i);
+                    int end = eol < 0 ? _text.length() : eol;
+                    int k = Math.min(CHUNK_SIZE, end - i);
+                    boolean endsLine = i + k == eol;
+                    Part part = pipeline.claim();
+                    _text.getChars(i, i + k, part.chars(), 0);
+                    part.fill(k, endsLine);
+                    pipeline.publish();
+                    i += endsLine ? k + 1 : k;
+                }
+                Part part = pipeline.claim();
+                System.arraycopy(chunk, 0, part.chars(), 0, _partial);
+                part.fill(_partial, _input.atLineEnd());
+                pipeline.publish();
+                boolean lineStart = _input.atLineEnd();
+                while (!lineStart || _input.hasNextLine()) {
+                    part = pipeline.claim();
+                    int n = _input.readLinePart(part.chars());
+                    if (lineStart && n > 0 && part.chars()[0] == '*') {
+                        System.arraycopy(part.chars(), 0, chunk, 0, n);
+                        pipeline.finish();
+                        return n;
+                    }
+                    lineStart = _input.atLineEnd();
+                    part.fill(n, lineStart);
+                    pipeline.publish();
+                }
+                pipeline.finish();
+                return -1;
+            } catch (EnigmaException excp) {
+                pipeline.finish();
+                throw excp;
+            }
+        }
+
+        @Override
+        public Session call() {
+            Worker worker = WORKER.get();
+            worker.bytes().reset();
+            try {
+                run(worker.formatter(), worker.chunk(), _text.length());
+            } catch (EnigmaException excp) {
+                _failure = excp;
+            }
+            worker.formatter().flush();
+            _formatted = worker.bytes().toByteArray();
+            if (_failure != null) {
+                WORKER.remove();
+            }
+            return this;
+        }
+
+        /** Convert my complete lines, which end before END in _text,
+         *  writing them to OUT, using BUF to hold parts of lines. */
+        private void run(GroupFormatter out, char[] buf, int end) {
+            int start = 0;
+            while (start < end) {
+                int eol = _text.indexOf("\n", start);
+                for (int i = start; i < eol; i += buf.length) {
+                    int k = Math.min(buf.length, eol - i);
+                    _text.getChars(i, i + k, buf, 0);
+                    convertPart(_machine, buf, k, out);
+                }
+                out.endLine();
+                Metrics.get().addMessage();
+                start = eol + 1;
+            }
+        }
+
+        /** Return my formatted output, after call. */
+        byte[] output() {
+            return _formatted;
+        }
+
+        /** Return the error that stopped my conversion, or null. */
+        EnigmaException failure() {
+            return _failure;
+        }
+
+        /** The machine, set up for me alone, that converts my lines. */
+        private final Machine _machine;
+        /** My message lines, each followed by a newline. */
+        private final StringBuilder _text = new StringBuilder();
+        /** Length of the line part refused by add. */
+        private int _partial;
+        /** Formatted output. */
+        private byte[] _formatted;
+        /** Error that stopped conversion, if any. */
+        private EnigmaException _failure;
+    }
+
+    /** Part of a message line on its way through a Pipeline. */
+    private static class Part {
+
+        /** Return the buffer holding my characters. */
+        char[] chars() {
+            return _chars;
+        }
+
+        /** Hold the first N characters of chars(), ending a line iff
+         *  ENDSLINE. */
+        void fill(int n, boolean endsLine) {
+            _length = n;
+            _endsLine = endsLine;
+            _last = false;
+            _failure = null;
+        }
+
+        /** My characters. */
+        private final char[] _chars = new char[CHUNK_SIZE];
+        /** Number of characters in _chars in use. */
+        private int _length;
+        /** True iff I end a line. */
+        private boolean _endsLine;
+        /** True iff I mark the end of the pipeline's input. */
+        private boolean _last;
+        /** The error found in converting me, if any. */
+        private EnigmaException _failure;
+    }
+
+    /** Converts a long session in three stages, each on its own thread,
+     *  so that reading, conversion and printing overlap: the thread that
+     *  makes it reads parts of message lines into Parts, a converter
+     *  thread checks and converts them, and a printer thread formats
+     *  them onto _output.  Parts pass between the stages through a
+     *  SlotRing, so when conversion or printing falls behind, reading
+     *  waits for it.  An error stops the stages after everything before
+     *  it has been printed. */
+    private class Pipeline {
+
+        /** A pipeline converting with MACHINE, which it advances. */
+        Pipeline(Machine machine) {
+            _machine = machine;
+            _converter = newThread(this::convert);
+            _printer = newThread(this::print);
+            _converter.start();
+            _printer.start();
+        }
+
+        /** Return the Part into which to read next, waiting for one to
+         *  come free. */
+        Part claim() {
+            Part part = _ring.acquire(READ);
+            if (part == null) {
+                finish();
+            }
+            return part;
+        }
+
+        /** Pass the claimed Part on for conversion. */
+        void publish() {
+            _ring.release(READ);
+        }
+
+        /** Wait until everything published has been printed, and stop.
+         *  Reports the first error found in converting or printing. */
+        void finish() {
+            Part part = _ring.acquire(READ);
+            if (part != null) {
+                part.fill(0, false);
+                part._last = true;
+                _ring.release(READ);
+            }
+            join();
+            if (_failure != null) {
+                throw _failure;
+            }
+        }
+
+        /** Wait for my threads to end. */
+        private void join() {
+            try {
+                _converter.join();
+                _printer.join();
+            } catch (InterruptedException excp) {
+                throw error("interrupted while converting");
+            }
+        }
+
+        /** Check and convert each published Part in turn, until the
+         *  last or the first that is in error.  A Part may be refilled
+         *  as soon as it is released, so whether to stop is decided
+         *  before. */
+        private void convert() {
+            while (true) {
+                Part part = _ring.acquire(CONVERT);
+                if (part == null) {
+                    return;
+                }
+                if (!part._last) {
+                    try {
+                        encryptPart(_machine, part._chars, part._length);
+                    } catch (EnigmaException excp) {
+                        part._failure = excp;
+                    }
+                }
+                boolean done = part._last || part._failure != null;
+                _ring.release(CONVERT);
+                if (done) {
+                    return;
+                }
+            }
+        }
+
+        /** Print each converted Part in turn, until the last or the
+         *  first that is in error. */
+        private void print() {
+            GroupFormatter out = Main.this._output;
+            while (true) {
+                Part part = _ring.acquire(PRINT);
+                if (part == null || part._last) {
+                    return;
+                }
+                try {
+                    if (part._failure != null) {
+                        throw part._failure;
+                    }
+                    formatPart(part._chars, part._length, out);
+                    if (part._endsLine) {
+                        out.endLine();
+                        Metrics.get().addMessage();
+                    }
+                } catch (EnigmaException excp) {
+                    _failure = excp;
+                    _ring.stop();
+                    return;
+                }
+                _ring.release(PRINT);
             }
         }
+
+        /** Return a new daemon thread running BODY. */
+        private Thread newThread(Runnable body) {
+            Thread thread = new Thread(body, PIPELINE_THREAD);
+            thread.setDaemon(true);
+            return thread;
+        }
+
+        /** Machine converting the session. */
+        private final Machine _machine;
+        /** Parts in use, passing from reading to conversion to
+         *  printing. */
+        private final SlotRing<Part> _ring =
+            new SlotRing<>(PIPELINE_PARTS, 3, Part::new);
+        /** Thread converting Parts. */
+        private final Thread _converter;
+        /** Thread printing Parts. */
+        private final Thread _printer;
+        /** First error found in converting or printing, if any. */
+        private volatile EnigmaException _failure;
     }
+
+    /** Reusable buffers of one thread converting sessions. */
+    private static class Worker {
+
+        /** Return the destination of my formatter's output. */
+        ByteArrayOutputStream bytes() {
+            return _bytes;
+        }
+
+        /** Return my formatter. */
+        GroupFormatter formatter() {
+            return _formatter;
+        }
+
+        /** Return my buffer for parts of message lines. */
+        char[] chunk() {
+            return _chunk;
+        }
+
+        /** Destination of my formatter's output. */
+        private final ByteArrayOutputStream _bytes =
+            new ByteArrayOutputStream();
+        /** Formatter for session output. */
+        private final GroupFormatter _formatter =
+            new GroupFormatter(Channels.newChannel(_bytes), GROUP_SIZE);
+        /** Buffer for parts of message lines. */
+        private final char[] _chunk = new char[CHUNK_SIZE];
+    }
+
     /** Check if the message contains characters outside of alphabet.
-     * @param msg every message line.*/
-    private void checkmsgalph(String msg) {
-        for (int i = 0; i < msg.length(); i++) {
-            if (!_alphabet.contains(msg.charAt(i)) && msg.charAt(i) != ' ') {
-                throw error("Message not in alphabet");
+     * @param msg part of a message line.
+     * @param n number of characters of MSG in use.
+     * @return the number of those characters that are not spaces.*/
+    private int checkmsgalph(char[] msg, int n) {
+        int letters = 0;
+        for (int i = 0; i < n; i++) {
+            if (msg[i] != ' ') {
+                if (!_alphabet.contains(msg[i])) {
+                    throw error("Message not in alphabet");
+                }
+                letters += 1;
             }
         }
+        return letters;
     }
 
     /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
+     *  file _config, or of the compiled image _image. */
     private Machine readConfig() {
+        if (_image != null) {
+            MachineSpec spec = ConfigImage.read(_image);
+            _alphabet = spec.alphabet();
+            _registry = spec.registry();
+            _usedRotors = new BitSet(_registry.size());
+            return new Machine(spec);
+        }
         try {
             String alphabet = _config.nextLine();
             checkalphabet(alphabet);
@@ -118,7 +684,7 @@ public final class Main {
             int numrotors = _config.nextInt();
             int numpawls = _config.nextInt();
             assert numrotors > numpawls && numpawls >= 0;
-            allrotors = new ArrayList<Rotor>();
+            ArrayList<Rotor> allrotors = new ArrayList<Rotor>();
             if (!_config.nextLine().equals("")) {
                 throw error("Too many arguments in second line");
             }
@@ -130,7 +696,10 @@ public final class Main {
                 allrotors.add(rotor);
 
             }
-            return new Machine(_alphabet, numrotors, numpawls, allrotors);
+            _registry = new RotorRegistry(allrotors);
+            _usedRotors = new BitSet(_registry.size());
+            return new Machine(new MachineSpec(_alphabet, numrotors,
+                                               numpawls, _registry));
         } catch (NoSuchElementException excp) {
             throw error("configuration file truncated");
         } catch (AssertionError ecp) {
@@ -262,45 +831,79 @@ public final class Main {
     }
 
     /** Checks to see if the same rotor is being used in the setup.
+     *  Names not in the registry are left for insertRotors to report.
      *  @param rotors  list of rotor arrays.*/
     private void checksamerotor(String[] rotors) {
+        _usedRotors.clear();
         for (int i = 1; i < rotors.length; i++) {
-            for (int j = i + 1; j < rotors.length; j++) {
-                if (rotors[i].equals(rotors[j])) {
-                    throw error("Rotors cannot be the same");
-                }
+            int k = _registry.indexOf(rotors[i]);
+            if (k < 0) {
+                continue;
             }
-        }
-    }
-
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        String nmsg = msg.replaceAll("\\s+", "");
-        String op = "";
-        for (int idx = 0; idx < nmsg.length(); idx = idx + 1) {
-            if ((idx + 1) % 5 == 0) {
-                op = op + nmsg.charAt(idx) + " ";
-            } else {
-                op = op + nmsg.charAt(idx);
+            if (_usedRotors.get(k)) {
+                throw error("Rotors cannot be the same");
             }
+            _usedRotors.set(k);
         }
-        _output.println(op);
     }
 
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
     /** Source of input messages. */
-    private Scanner _input;
+    private ChunkedInput _input;
 
     /** Source of machine configuration. */
     private Scanner _config;
 
-    /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    /** Name of the compiled configuration image, if the configuration is
+     *  one, else null. */
+    private String _image;
+
+    /** Formatter for encoded/decoded messages. */
+    private GroupFormatter _output;
+
+    /** Number of characters of a message line handled at once. */
+    private static final int CHUNK_SIZE = 1 << 13;
+
+    /** Name of the threads of a Pipeline. */
+    static final String PIPELINE_THREAD = "enigma-pipeline";
+
+    /** Number of Parts in a Pipeline. */
+    private static final int PIPELINE_PARTS = 16;
+
+    /** Stages of a Pipeline, in order. */
+    private static final int READ = 0, CONVERT = 1, PRINT = 2;
+
+    /** Threads converting sessions. */
+    private ExecutorService _pool;
+
+    /** Sessions being converted, oldest first, not yet printed. */
+    private final ArrayDeque<Future<Session>> _pending = new ArrayDeque<>();
+
+    /** Buffers of the current thread, when converting sessions. */
+    private static final ThreadLocal<Worker> WORKER =
+        ThreadLocal.withInitial(Worker::new);
+
+    /** Number of threads converting sessions. */
+    private static final int WORKERS =
+        Runtime.getRuntime().availableProcessors();
+
+    /** Largest number of sessions converted or awaiting printing at
+     *  once. */
+    private static final int MAX_PENDING = 4 * WORKERS;
+
+    /** Most characters of message lines held for one session; longer
+     *  sessions are converted as they are read. */
+    private static final int SESSION_LIMIT = 1 << 16;
+
+    /** Number of letters in each printed group. */
+    private static final int GROUP_SIZE = 5;
+
+    /** All rotors, by name and index. */
+    private RotorRegistry _registry;
 
-    /** Arraylist of all rotors.*/
-    private ArrayList<Rotor> allrotors;
+    /** Indices in _registry of the rotors named in a setting line. */
+    private BitSet _usedRotors;
 
 }
@@ -0,0 +1,158 @@
+package enigma;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/** Tests of Main's conversion of whole input files, compared with the
+ *  line-by-line conversion of Main.converse.
+ *  @author Fourth Teerakapibal
+ */
+public class MainTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** A configuration with the naval rotors of TestUtils.initRotor. */
+    private static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n"
+        + " 5 3\n"
+        + " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " II ME     (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)\n"
+        + " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ     (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " V MZ      (AVOLDRWFIUQ)(BZKSMNHYC) (EGTJPX)\n"
+        + " VI MZM    (AJQDVLEOZWIYTS) (CGMNHFUX) (BPRK)\n"
+        + " VII MZM   (ANOUPFRIMBZTLWKSVEGCJYDHXQ)\n"
+        + " VIII MZM  (AFLSETWUNDHOZVICQ) (BKJ) (GXY) (MPR)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " Gamma N   (AFNIRLBSQWVXGUZDKMTPCOYJHE)\n"
+        + " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "           (RX) (SZ) (TV)\n"
+        + " C R       (AR) (BD) (CO) (EJ) (FN) (GT) (HK) (IV) (LM) (PW)\n"
+        + "           (QZ) (SX) (UY)\n";
+
+    /** A setting line. */
+    private static final String SETTING =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n";
+
+    /** A message line. */
+    private static final String LINE =
+        "FROM HIS SHOULDER HIAWATHA TOOK THE CAMERA OF ROSEWOOD\n";
+
+    /** The result of converting INPUT with Main.process: the output
+     *  written, followed, if conversion stopped with an error, by the
+     *  line reporting it, as Main.main and Main.converse report it. */
+    private String process(String input) throws IOException {
+        File config = File.createTempFile("enigma", ".conf");
+        File in = File.createTempFile("enigma", ".in");
+        File out = File.createTempFile("enigma", ".out");
+        try {
+            Files.writeString(config.toPath(), CONFIG);
+            Files.writeString(in.toPath(), input);
+            String error = "";
+            try {
+                new Main(new String[]{config.getPath(), in.getPath(),
+                                      out.getPath()}).process();
+            } catch (EnigmaException excp) {
+                error = String.format("Error: %s%n", excp.getMessage());
+            }
+            return Files.readString(out.toPath()) + error;
+        } finally {
+            config.delete();
+            in.delete();
+            out.delete();
+        }
+    }
+
+    /** The result of converting INPUT one line at a time with
+     *  Main.converse. */
+    private String converse(String input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Main.converse(new MachineSpec(new Alphabet(), 5, 3,
+                                      TestUtils.initRotor()),
+                      new ByteArrayInputStream(
+                          input.getBytes(StandardCharsets.UTF_8)),
+                      Channels.newChannel(out));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Return true iff a thread of a Pipeline is alive. */
+    private boolean pipelineRunning() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(Main.PIPELINE_THREAD)
+                && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return a session too long to hold in memory, with BAD, if not
+     *  null, as one of its lines. */
+    private String longSession(String bad) {
+        StringBuilder input = new StringBuilder(SETTING);
+        for (int k = 0; k < 2500; k += 1) {
+            input.append(LINE);
+            if (k == 1500 && bad != null) {
+                input.append(bad);
+            }
+        }
+        input.append("\n");
+        for (int k = 0; k < 30000; k += 1) {
+            input.append((char) ('A' + k * 7 % 26));
+        }
+        input.append("\n");
+        return input.toString();
+    }
+
+    @Test
+    public void sessionsInOrder() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int k = 0; k < 60; k += 1) {
+            input.append(String.format("* B Beta III IV I A%cL%c (HQ)%n",
+                                       'A' + k % 26, 'A' + k / 26));
+            input.append(LINE);
+            if (k == 30) {
+                input.append("TOOK THE camera\n");
+            }
+            input.append(LINE);
+        }
+        String expected = converse(input.toString());
+        assertTrue(expected.endsWith(
+            String.format("Error: Message not in alphabet%n")));
+        /* Thirty whole sessions, a line of the next, and the error. */
+        assertEquals(30 * 2 + 1 + 1, expected.split("\\R").length);
+        assertEquals(expected, process(input.toString()));
+    }
+
+    @Test
+    public void pipelined() throws IOException {
+        String input = longSession(null) + SETTING + LINE + LINE;
+        String expected = converse(input);
+        assertTrue(expected.length() > 1 << 17);
+        assertEquals(expected, process(input));
+        assertFalse(pipelineRunning());
+    }
+
+    @Test
+    public void pipelinedError() throws IOException {
+        String input = longSession("FROM his SHOULDER\n") + SETTING + LINE;
+        String expected = converse(input);
+        assertTrue(expected.endsWith(
+            String.format("Error: Message not in alphabet%n")));
+        assertEquals(expected, process(input));
+        assertFalse(pipelineRunning());
+    }
+
+}
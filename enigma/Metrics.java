@@ -0,0 +1,251 @@
+package enigma;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/** Counts of the work done by this process, for monitoring.  Counters
+ *  are LongAdders, so threads converting sessions at once update them
+ *  without contending; callers add work in bulk (per chunk of a message
+ *  line, say) rather than per character.  If the system property
+ *  enigma.jmx is "true", the counts are published through the platform
+ *  MBean server as enigma:type=Metrics.
+ *  @author Fourth Teerakapibal
+ */
+final class Metrics implements MetricsMXBean {
+
+    /** Metrics for this process. */
+    private Metrics() {
+    }
+
+    /** Return the metrics of this process, registering them with JMX on
+     *  first use if enabled. */
+    static Metrics get() {
+        return INSTANCE;
+    }
+
+    /** Record the conversion of CHARS message characters, not counting
+     *  spaces, in NANOS nanoseconds. */
+    void addEncrypted(long chars, long nanos) {
+        _characters.add(chars);
+        _encryptNanos.add(nanos);
+        long now = System.nanoTime();
+        if (now - _nextSample >= 0) {
+            sample(now);
+        }
+    }
+
+    /** Record the end of a message line. */
+    void addMessage() {
+        _messages.increment();
+    }
+
+    /** Record the processing of a setting line. */
+    void addSetup() {
+        _setups.increment();
+    }
+
+    /** Record ADVANCES rotor advances, of which DOUBLESTEPS were double
+     *  steps. */
+    void addSteps(long advances, long doubleSteps) {
+        _rotorSteps.add(advances);
+        _doubleSteps.add(doubleSteps);
+    }
+
+    /** Record the error EXCP. */
+    void addError(EnigmaException excp) {
+        String kind = excp.kind();
+        if (!_errors.containsKey(kind) && _errors.size() >= MAX_KINDS) {
+            kind = OTHER;
+        }
+        _errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+    }
+
+    /** Record NANOS nanoseconds spent parsing. */
+    void addParseNanos(long nanos) {
+        _parseNanos.add(nanos);
+    }
+
+    /** Record NANOS nanoseconds spent formatting output. */
+    void addFormatNanos(long nanos) {
+        _formatNanos.add(nanos);
+    }
+
+    @Override
+    public long getCharacters() {
+        return _characters.sum();
+    }
+
+    @Override
+    public long getMessages() {
+        return _messages.sum();
+    }
+
+    @Override
+    public long getSetups() {
+        return _setups.sum();
+    }
+
+    @Override
+    public long getRotorSteps() {
+        return _rotorSteps.sum();
+    }
+
+    @Override
+    public long getDoubleSteps() {
+        return _doubleSteps.sum();
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        Map<String, Long> errors = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> e : _errors.entrySet()) {
+            errors.put(e.getKey(), e.getValue().sum());
+        }
+        return errors;
+    }
+
+    @Override
+    public synchronized double getCharactersPerSecond() {
+        long now = System.nanoTime();
+        sample(now);
+        int oldest = _samples < WINDOW ? 0 : _samples % WINDOW;
+        long nanos = now - _sampleTimes[oldest];
+        if (_samples < 2 || nanos <= 0) {
+            return 0;
+        }
+        long chars = _characters.sum() - _sampleCounts[oldest];
+        return chars * 1e9 / nanos;
+    }
+
+    @Override
+    public double getParseMillis() {
+        return _parseNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getEncryptMillis() {
+        return _encryptNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getFormatMillis() {
+        return _formatNanos.sum() / 1e6;
+    }
+
+    @Override
+    public synchronized void reset() {
+        _characters.reset();
+        _messages.reset();
+        _setups.reset();
+        _rotorSteps.reset();
+        _doubleSteps.reset();
+        _errors.clear();
+        _parseNanos.reset();
+        _encryptNanos.reset();
+        _formatNanos.reset();
+        _samples = 0;
+    }
+
+    /** Record the number of characters converted as of time NOW, if a
+     *  sample is due, keeping the last WINDOW samples. */
+    private synchronized void sample(long now) {
+        if (_samples > 0 && now - _nextSample < 0) {
+            return;
+        }
+        int slot = _samples % WINDOW;
+        _sampleTimes[slot] = now;
+        _sampleCounts[slot] = _characters.sum();
+        _samples += 1;
+        _nextSample = now + SAMPLE_NANOS;
+    }
+
+    /** Register INSTANCE with the platform MBean server if the system
+     *  property enigma.jmx is "true", and return true iff it is then
+     *  registered.  Publishing metrics is not worth failing for: it runs
+     *  while this class is initialized, where an exception would make
+     *  every later use of the class fail, so a failure to register,
+     *  such as a second registration in the same JVM, is only reported
+     *  on the standard error. */
+    static boolean register() {
+        if (!Boolean.getBoolean("enigma.jmx")) {
+            return false;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+            return true;
+        } catch (JMException | SecurityException excp) {
+            System.err.printf("Warning: could not register metrics: %s%n",
+                              excp.getMessage());
+            return false;
+        }
+    }
+
+    /** Name under which metrics are published. */
+    static final String OBJECT_NAME = "enigma:type=Metrics";
+
+    /** Most kinds of error counted separately. */
+    private static final int MAX_KINDS = 64;
+
+    /** Kind under which further kinds of error are counted. */
+    private static final String OTHER = "other";
+
+    /** Number of samples over which the conversion rate is measured. */
+    private static final int WINDOW = 10;
+
+    /** Nanoseconds between samples of the conversion rate. */
+    private static final long SAMPLE_NANOS = 1_000_000_000L;
+
+    /** The metrics of this process. */
+    private static final Metrics INSTANCE = new Metrics();
+
+    static {
+        register();
+    }
+
+    /** Characters converted. */
+    private final LongAdder _characters = new LongAdder();
+
+    /** Message lines converted. */
+    private final LongAdder _messages = new LongAdder();
+
+    /** Setting lines processed. */
+    private final LongAdder _setups = new LongAdder();
+
+    /** Rotor advances. */
+    private final LongAdder _rotorSteps = new LongAdder();
+
+    /** Double steps. */
+    private final LongAdder _doubleSteps = new LongAdder();
+
+    /** Errors, by kind. */
+    private final ConcurrentHashMap<String, LongAdder> _errors =
+        new ConcurrentHashMap<>();
+
+    /** Nanoseconds spent parsing. */
+    private final LongAdder _parseNanos = new LongAdder();
+
+    /** Nanoseconds spent converting. */
+    private final LongAdder _encryptNanos = new LongAdder();
+
+    /** Nanoseconds spent formatting. */
+    private final LongAdder _formatNanos = new LongAdder();
+
+    /** Times of the last WINDOW samples, in a ring. */
+    private final long[] _sampleTimes = new long[WINDOW];
+
+    /** Characters converted as of each sample. */
+    private final long[] _sampleCounts = new long[WINDOW];
+
+    /** Number of samples taken. */
+    private int _samples;
+
+    /** Time at which the next sample is due. */
+    private volatile long _nextSample;
+
+}
@@ -0,0 +1,48 @@
+package enigma;
+
+import java.util.Map;
+
+/** The management interface of Metrics, as seen through JMX.  (JMX
+ *  requires it to be public.)
+ *  @author Fourth Teerakapibal
+ */
+public interface MetricsMXBean {
+
+    /** Return the number of message characters converted, not counting
+     *  spaces. */
+    long getCharacters();
+
+    /** Return the number of message lines converted. */
+    long getMessages();
+
+    /** Return the number of setting lines processed. */
+    long getSetups();
+
+    /** Return the number of times any rotor has advanced. */
+    long getRotorSteps();
+
+    /** Return the number of double steps: advances of a rotor other than
+     *  the rightmost on its own notch. */
+    long getDoubleSteps();
+
+    /** Return the number of errors reported, by kind of error. */
+    Map<String, Long> getErrors();
+
+    /** Return the rate at which characters were converted over the last
+     *  several seconds, per second. */
+    double getCharactersPerSecond();
+
+    /** Return the time spent reading configurations and setting lines,
+     *  in milliseconds. */
+    double getParseMillis();
+
+    /** Return the time spent converting messages, in milliseconds. */
+    double getEncryptMillis();
+
+    /** Return the time spent formatting output, in milliseconds. */
+    double getFormatMillis();
+
+    /** Set all counts and times to zero. */
+    void reset();
+
+}
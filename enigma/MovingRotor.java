@@ -15,8 +15,27 @@ class MovingRotor extends Rotor {
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
         _notches = notches;
-        _permutation = perm;
-        _setting = 0;
+        _notchAt = new boolean[perm.size()];
+        for (int i = 0; i < notches.length(); i++) {
+            if (perm.alphabet().contains(notches.charAt(i))) {
+                _notchAt[perm.alphabet().toInt(notches.charAt(i))] = true;
+            }
+        }
+    }
+
+    /** A rotor named NAME whose permutation in its default setting is
+     *  PERM, and which is at a notch at each setting S for which
+     *  NOTCHAT[S] is true.  NOTCHAT is used as it is, not copied. */
+    MovingRotor(String name, Permutation perm, boolean[] notchAt) {
+        super(name, perm);
+        StringBuilder notches = new StringBuilder();
+        for (int i = 0; i < notchAt.length; i++) {
+            if (notchAt[i]) {
+                notches.append(perm.alphabet().toChar(i));
+            }
+        }
+        _notches = notches.toString();
+        _notchAt = notchAt;
     }
 
     @Override
@@ -26,28 +45,27 @@ class MovingRotor extends Rotor {
 
     @Override
     void advance() {
-        set(_permutation.wrap(setting() + 1));
+        set(permutation().wrap(setting() + 1));
+    }
+
+    @Override
+    boolean atNotch(int setting) {
+        return _notchAt[setting];
     }
 
-    /** Returns true iff I am positioned to allow the rotor to my left
-     *  to advance. */
     @Override
-    boolean atNotch() {
-        for (int notch = 0; notch < _notches.length(); notch++) {
-            char cursetting = this.alphabet().toChar(this.setting());
-            if (_notches.charAt(notch) == cursetting) {
-                return true;
+    int stepsToNotch(int setting) {
+        for (int k = 1; k <= size(); k++) {
+            if (_notchAt[permutation().wrap(setting + k)]) {
+                return k;
             }
         }
-        return false;
+        return Integer.MAX_VALUE;
     }
 
-    /** Setting of rotor. */
-    private int _setting;
-
     /** String of notches. */
     private String _notches;
 
-    /** Permutation. */
-    private Permutation _permutation;
+    /** True at each setting where I am at a notch. */
+    private final boolean[] _notchAt;
 }
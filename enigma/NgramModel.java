@@ -0,0 +1,154 @@
+package enigma;
+
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** Log-probabilities of the N-letter sequences (n-grams) of a language,
+ *  for scoring trial decryptions.  Every n-gram of the alphabet has an
+ *  entry, so scoring a window of text is one table lookup; n-grams never
+ *  seen get a floor well below the rarest one seen.
+ *  @author Fourth Teerakapibal
+ */
+final class NgramModel {
+
+    /** A model of the N-grams of ALPHA whose counts are COUNTS, indexed
+     *  as by index(). */
+    private NgramModel(Alphabet alpha, int n, long[] counts) {
+        _alphabet = alpha;
+        _order = n;
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            throw error("No n-grams to build a model from");
+        }
+        _logProbs = new float[counts.length];
+        float floor = (float) Math.log10(FLOOR / total);
+        for (int i = 0; i < counts.length; i += 1) {
+            if (counts[i] == 0) {
+                _logProbs[i] = floor;
+            } else {
+                _logProbs[i] = (float) Math.log10((double) counts[i] / total);
+            }
+        }
+    }
+
+    /** Return a model of the n-grams of ALPHA read from COUNTS, which
+     *  holds lines each containing an n-gram and the number of times it
+     *  occurs, as in "TION 13168375".  All n-grams must be of the same
+     *  length. */
+    static NgramModel read(Alphabet alpha, Scanner counts) {
+        int n = 0;
+        long[] table = null;
+        try {
+            while (counts.hasNext()) {
+                String gram = counts.next();
+                long count = counts.nextLong();
+                if (table == null) {
+                    n = gram.length();
+                    table = new long[tableSize(alpha, n)];
+                } else if (gram.length() != n) {
+                    throw error("N-grams of different lengths");
+                }
+                int index = 0;
+                for (int i = 0; i < n; i += 1) {
+                    index = index * alpha.size() + alpha.toInt(gram.charAt(i));
+                }
+                table[index] += count;
+            }
+        } catch (NoSuchElementException excp) {
+            throw error("bad n-gram count");
+        }
+        if (table == null) {
+            throw error("No n-grams to build a model from");
+        }
+        return new NgramModel(alpha, n, table);
+    }
+
+    /** Return a model of the N-grams of ALPHA counted in TEXT.  Characters
+     *  of TEXT outside ALPHA separate runs of letters; no n-gram spans
+     *  them. */
+    static NgramModel train(Alphabet alpha, int n, String text) {
+        long[] table = new long[tableSize(alpha, n)];
+        int run = 0, index = 0;
+        for (int i = 0; i < text.length(); i += 1) {
+            char c = text.charAt(i);
+            if (!alpha.contains(c)) {
+                run = 0;
+                continue;
+            }
+            index = (index * alpha.size() + alpha.toInt(c)) % table.length;
+            run += 1;
+            if (run >= n) {
+                table[index] += 1;
+            }
+        }
+        return new NgramModel(alpha, n, table);
+    }
+
+    /** Return the number of letters in each of my n-grams. */
+    int order() {
+        return _order;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the log-probability of the n-gram TEXT[START ..
+     *  START+order()-1], whose letters are alphabet indices. */
+    float score(int[] text, int start) {
+        int index = 0;
+        for (int i = start; i < start + _order; i += 1) {
+            index = index * _alphabet.size() + text[i];
+        }
+        return _logProbs[index];
+    }
+
+    /** Return the sum of the log-probabilities of all n-grams in TEXT,
+     *  whose letters are alphabet indices. */
+    double score(int[] text) {
+        double sum = 0;
+        for (int i = 0; i + _order <= text.length; i += 1) {
+            sum += score(text, i);
+        }
+        return sum;
+    }
+
+    /** Return the number of N-grams of ALPHA, if small enough to
+     *  tabulate. */
+    private static int tableSize(Alphabet alpha, int n) {
+        if (n <= 0) {
+            throw error("N-gram length must be positive");
+        }
+        long size = 1;
+        for (int i = 0; i < n; i += 1) {
+            size *= alpha.size();
+            if (size > TABLE_LIMIT) {
+                throw error("Too many n-grams to tabulate");
+            }
+        }
+        return (int) size;
+    }
+
+    /** Most entries in a table of log-probabilities. */
+    private static final int TABLE_LIMIT = 1 << 24;
+
+    /** Count given to an n-gram never seen, in computing its floor. */
+    private static final double FLOOR = 0.01;
+
+    /** Alphabet of my n-grams. */
+    private final Alphabet _alphabet;
+
+    /** Number of letters in each n-gram. */
+    private final int _order;
+
+    /** Log-probability of each n-gram, indexed by its letters as the
+     *  digits of a number in base alphabet size. */
+    private final float[] _logProbs;
+
+}
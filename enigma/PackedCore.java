@@ -0,0 +1,292 @@
+package enigma;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static enigma.EnigmaException.*;
+
+/** A machine core for one key (choice of rotors, ring settings and
+ *  plugboard) that holds the positions of all its rotors in one long.
+ *  The setting of each rotating rotor occupies its own field of a
+ *  fixed number of bits, the leftmost rotor's the most significant, so states
+ *  compare in the order of their settings read left to right and can
+ *  be hashed and stored as plain numbers.  Stepping, double steps
+ *  included, is arithmetic on those fields, guided by a bit mask of
+ *  each rotor's notches, and each rotor's wiring is read from one flat
+ *  table indexed directly by its setting, so converting a character
+ *  makes no calls and follows no pointers to rotors.
+ *
+ *  Every rotor but the rightmost moves rarely, so the path through all
+ *  of them, out to the reflector and back, is composed into one
+ *  permutation, a "stack", for each of their positions as it is first
+ *  needed, and kept for any machine using the core.  With the stack for
+ *  its present position, a machine converts a character with two passes
+ *  through the rightmost rotor and one lookup, however many rotors lie
+ *  to its left.
+ *  @author Fourth Teerakapibal
+ */
+final class PackedCore {
+
+    /** A core for machines described by SPEC with the rotors, ring
+     *  settings and plugboard of CURSOR, which must hold a valid
+     *  choice of rotors. */
+    PackedCore(MachineSpec spec, Cursor cursor) {
+        spec.checkusedrotor(cursor);
+        int numRotors = cursor.numRotors();
+        _size = spec.alphabet().size();
+        _last = numRotors - 1;
+        _first = numRotors - spec.numPawls();
+        int moving = numRotors - _first;
+        _width = Math.max(1, Integer.SIZE
+                          - Integer.numberOfLeadingZeros(_size - 1));
+        if ((long) _width * moving >= Long.SIZE) {
+            throw error("Too many rotor positions to pack");
+        }
+        _fieldMask = (1L << _width) - 1;
+        _shifts = new int[numRotors];
+        _masks = new long[numRotors];
+        _notches = new long[numRotors][(_size + Long.SIZE - 1) / Long.SIZE];
+        _forwardBase = new int[numRotors];
+        _backwardBase = new int[numRotors];
+        int forwardLength = 0, backwardLength = 0;
+        for (int slot = 0; slot < numRotors; slot += 1) {
+            int rows = slot >= _first ? _size : 1;
+            _forwardBase[slot] = forwardLength;
+            forwardLength += rows * _size;
+            if (slot > 0) {
+                _backwardBase[slot] = backwardLength;
+                backwardLength += rows * _size;
+            }
+        }
+        _forward = new int[forwardLength];
+        _backward = new int[backwardLength];
+        for (int slot = 0; slot < numRotors; slot += 1) {
+            Rotor rotor = cursor.rotor(slot);
+            if (slot >= _first) {
+                _shifts[slot] = (_last - slot) * _width;
+                _masks[slot] = _fieldMask;
+                for (int posn = 0; posn < _size; posn += 1) {
+                    if (rotor.atNotch(posn)) {
+                        _notches[slot][posn >>> 6] |= 1L << posn;
+                    }
+                    fill(slot, posn, rotor.row(posn, cursor.offset(slot)),
+                         rotor);
+                }
+            } else {
+                fill(slot, 0, cursor.row(slot), rotor);
+            }
+        }
+        _plugboard = new int[_size];
+        for (int c = 0; c < _size; c += 1) {
+            _plugboard[c] = cursor.plugboard().permute(c);
+        }
+        int stackBits = _width * Math.max(0, moving - 1);
+        _stacks = stackBits > STACK_BITS ? null
+            : new AtomicReferenceArray<>(1 << stackBits);
+    }
+
+    /** Return true iff a core can be made for machines described by
+     *  SPEC with the key of CURSOR: its rotating rotors are in the slots
+     *  with pawls, their positions fit in a long, and it has a
+     *  plugboard. */
+    static boolean accepts(MachineSpec spec, Cursor cursor) {
+        int numRotors = cursor.numRotors();
+        int first = numRotors - spec.numPawls();
+        for (int slot = 0; slot < numRotors; slot += 1) {
+            if (cursor.rotor(slot) == null
+                || cursor.rotating(slot) != (slot >= first)) {
+                return false;
+            }
+        }
+        int size = spec.alphabet().size();
+        int width = Math.max(1, Integer.SIZE
+                             - Integer.numberOfLeadingZeros(size - 1));
+        return (long) width * (numRotors - first) < Long.SIZE
+            && cursor.plugboard() != null;
+    }
+
+    /** Return the state of the rotors of CURSOR, which must hold the
+     *  same rotors as the one I was made from. */
+    long pack(Cursor cursor) {
+        long state = 0;
+        for (int slot = _first; slot <= _last; slot += 1) {
+            state = (state << _width) | cursor.setting(slot);
+        }
+        return state;
+    }
+
+    /** Set the rotors of CURSOR, which must hold the same rotors as the
+     *  one I was made from, to STATE. */
+    void unpack(long state, Cursor cursor) {
+        for (int slot = _first; slot <= _last; slot += 1) {
+            cursor.setSetting(slot, setting(state, slot));
+        }
+    }
+
+    /** Return the setting of the rotor in slot SLOT in STATE. */
+    int setting(long state, int slot) {
+        return (int) ((state >>> _shifts[slot]) & _masks[slot]);
+    }
+
+    /** Return the rotors that move on the keystroke after STATE, by the
+     *  rules of MachineSpec.step: the rightmost rotor always moves, and
+     *  a rotating rotor whose right neighbor is at a notch moves, as
+     *  does that neighbor.  Bit K is set iff the Kth rotating rotor from
+     *  the left moves. */
+    long moves(long state) {
+        long moves = 1L << (_last - _first);
+        for (int slot = _last; slot > _first; slot -= 1) {
+            int posn = setting(state, slot);
+            if ((_notches[slot][posn >>> 6] & (1L << posn)) != 0) {
+                moves |= 3L << (slot - 1 - _first);
+            }
+        }
+        return moves;
+    }
+
+    /** Return true iff MOVES, as returned by moves, moves only the
+     *  rightmost rotor. */
+    boolean quiet(long moves) {
+        return moves == 1L << (_last - _first);
+    }
+
+    /** Return the number of rotors other than the rightmost that are at
+     *  a notch in STATE, and so double step on the next keystroke. */
+    int doubleSteps(long state) {
+        int count = 0;
+        for (int slot = _last - 1; slot > _first; slot -= 1) {
+            int posn = setting(state, slot);
+            if ((_notches[slot][posn >>> 6] & (1L << posn)) != 0) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /** Return STATE with the rotors in MOVES, as returned by moves,
+     *  advanced one position. */
+    long advance(long state, long moves) {
+        for (int slot = _first; slot <= _last; slot += 1) {
+            if ((moves & (1L << (slot - _first))) != 0) {
+                long posn = (state >>> _shifts[slot]) & _fieldMask;
+                long delta = posn + 1 == _size ? -posn : 1;
+                state += delta << _shifts[slot];
+            }
+        }
+        return state;
+    }
+
+    /** Return the positions in STATE of every rotor but the rightmost,
+     *  which determine its stack. */
+    long stackKey(long state) {
+        return state >>> _width;
+    }
+
+    /** Return the stack for STATE: the permutation whose entry C is the
+     *  index at which a signal leaving the rightmost rotor at C returns
+     *  to it.  The result must not be changed.  It is shared, unless
+     *  there are too many positions to keep a stack for each, in which
+     *  case it is computed into SCRATCH, an array of alphabet size. */
+    int[] stack(long state, int[] scratch) {
+        if (_stacks == null) {
+            compose(state, scratch);
+            return scratch;
+        }
+        int key = (int) stackKey(state);
+        int[] stack = _stacks.get(key);
+        if (stack == null) {
+            stack = new int[_size];
+            compose(state, stack);
+            _stacks.set(key, stack);
+        }
+        return stack;
+    }
+
+    /** Return the conversion of index C with the rotors in STATE,
+     *  without stepping them, where STACK is the stack for STATE. */
+    int path(long state, int c, int[] stack) {
+        int fast = setting(state, _last) * _size;
+        c = _plugboard[c];
+        c = _forward[_forwardBase[_last] + fast + c];
+        c = stack[c];
+        c = _backward[_backwardBase[_last] + fast + c];
+        return _plugboard[c];
+    }
+
+    /** Store in STACK the stack for STATE. */
+    private void compose(long state, int[] stack) {
+        for (int c = 0; c < _size; c += 1) {
+            int p = c;
+            for (int slot = _last - 1; slot >= 0; slot -= 1) {
+                p = _forward[_forwardBase[slot]
+                             + setting(state, slot) * _size + p];
+            }
+            for (int slot = 1; slot < _last; slot += 1) {
+                p = _backward[_backwardBase[slot]
+                              + setting(state, slot) * _size + p];
+            }
+            stack[c] = p;
+        }
+    }
+
+    /** Fill the tables of slot SLOT for setting POSN from the wiring of
+     *  ROTOR at table row ROW. */
+    private void fill(int slot, int posn, int row, Rotor rotor) {
+        int forward = _forwardBase[slot] + posn * _size;
+        int backward = _backwardBase[slot] + posn * _size;
+        for (int p = 0; p < _size; p += 1) {
+            _forward[forward + p] = rotor.convertForward(p, row);
+            if (slot > 0) {
+                _backward[backward + p] = rotor.convertBackward(p, row);
+            }
+        }
+    }
+
+    /** Most bits of position for which a stack is kept for each. */
+    private static final int STACK_BITS = 16;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Index of the rightmost slot. */
+    private final int _last;
+
+    /** Index of the leftmost slot with a pawl. */
+    private final int _first;
+
+    /** Width of each rotor's field in a state. */
+    private final int _width;
+
+    /** Mask of the low _width bits. */
+    private final long _fieldMask;
+
+    /** Shift of each slot's field in a state. */
+    private final int[] _shifts;
+
+    /** Mask of each slot's field after shifting: _fieldMask for
+     *  rotating slots, 0 for the rest. */
+    private final long[] _masks;
+
+    /** Bit set of the notches of each slot's rotor. */
+    private final long[][] _notches;
+
+    /** Start in _forward of each slot's rows. */
+    private final int[] _forwardBase;
+
+    /** Start in _backward of each slot's rows. */
+    private final int[] _backwardBase;
+
+    /** Forward wiring of every slot, indexed by setting and then by
+     *  input, from _forwardBase. */
+    private final int[] _forward;
+
+    /** Backward wiring of every slot but the reflector's. */
+    private final int[] _backward;
+
+    /** The plugboard, as a table. */
+    private final int[] _plugboard;
+
+    /** The stack for each stackKey, or null where not yet composed; or
+     *  null if there would be too many. */
+    private final AtomicReferenceArray<int[]> _stacks;
+
+}
@@ -0,0 +1,116 @@
+package enigma;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Converts one long message on several cores.  The message is cut into
+ *  chunks; each is converted by its own copy of the machine, advanced
+ *  with Machine.seek to the keystroke at which the chunk starts, so that
+ *  the result is the same as converting the whole message in sequence.
+ *  The copies are made in one pass, each seeking on from where the one
+ *  before it starts, so that when seek must skip rather than jump, the
+ *  whole pass still costs time in proportion to the message.
+ *  @author Fourth Teerakapibal
+ */
+final class ParallelConverter {
+
+    /** Not instantiable. */
+    private ParallelConverter() {
+    }
+
+    /** Convert IN[OFF .. OFF+LEN-1] into OUT[OFF .. OFF+LEN-1] as for
+     *  MACHINE.convert(IN, OFF, LEN, OUT), using the common fork-join
+     *  pool, and leave MACHINE in the state that call would. */
+    static void convert(Machine machine, char[] in, int off, int len,
+                        char[] out) {
+        convert(machine, in, off, len, out, DEFAULT_CHUNK,
+                ForkJoinPool.commonPool());
+    }
+
+    /** Convert IN[OFF .. OFF+LEN-1] into OUT[OFF .. OFF+LEN-1] as for
+     *  MACHINE.convert(IN, OFF, LEN, OUT), in chunks of CHUNK characters
+     *  run on POOL, and leave MACHINE in the state that call would. */
+    static void convert(Machine machine, char[] in, int off, int len,
+                        char[] out, int chunk, ForkJoinPool pool) {
+        int chunks = (len + chunk - 1) / chunk;
+        long[] starts = new long[chunks + 1];
+        for (int c = 0; c < chunks; c++) {
+            int lo = off + c * chunk, hi = Math.min(off + len, lo + chunk);
+            long keys = 0;
+            for (int i = lo; i < hi; i++) {
+                if (in[i] != ' ') {
+                    keys += 1;
+                }
+            }
+            starts[c + 1] = starts[c] + keys;
+        }
+        machine.seek(0);
+        Machine[] machines = new Machine[chunks];
+        Machine next = machine.copy();
+        for (int c = 0; c < chunks; c++) {
+            next.seek(starts[c] - (c == 0 ? 0 : starts[c - 1]));
+            machines[c] = next.copy();
+        }
+        pool.invoke(new Chunks(machines, in, off, len, out, chunk, 0,
+                               chunks));
+        machine.seek(starts[chunks]);
+    }
+
+    /** Converts a range of chunks, splitting it among workers. */
+    private static class Chunks extends RecursiveAction {
+
+        /** Convert chunks LO .. HI-1, of CHUNK characters each, of
+         *  IN[OFF .. OFF+LEN-1] into OUT, chunk c with MACHINES[c]. */
+        Chunks(Machine[] machines, char[] in, int off, int len, char[] out,
+               int chunk, int lo, int hi) {
+            _machines = machines;
+            _in = in;
+            _off = off;
+            _len = len;
+            _out = out;
+            _chunk = chunk;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Chunks(_machines, _in, _off, _len, _out,
+                                     _chunk, _lo, mid),
+                          new Chunks(_machines, _in, _off, _len, _out,
+                                     _chunk, mid, _hi));
+            } else if (_hi > _lo) {
+                Machine machine = _machines[_lo];
+                int lo = _off + _lo * _chunk;
+                int hi = Math.min(_off + _len, lo + _chunk);
+                machine.convert(_in, lo, hi - lo, _out);
+            }
+        }
+
+        /** The machine converting each chunk, already at the keystroke
+         *  at which the chunk starts.  They are copies of one machine
+         *  that had already recorded its rotor period, which they share,
+         *  as they do its keystream table, if any. */
+        private final Machine[] _machines;
+        /** Input characters. */
+        private final char[] _in;
+        /** Start of the message in _in and _out. */
+        private final int _off;
+        /** Length of the message. */
+        private final int _len;
+        /** Output characters. */
+        private final char[] _out;
+        /** Characters per chunk. */
+        private final int _chunk;
+        /** First chunk of my range. */
+        private final int _lo;
+        /** End of my range of chunks. */
+        private final int _hi;
+    }
+
+    /** Default number of characters per chunk. */
+    private static final int DEFAULT_CHUNK = 1 << 16;
+
+}
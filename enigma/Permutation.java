@@ -1,7 +1,5 @@
 package enigma;
 
-import java.util.ArrayList;
-
 import static enigma.EnigmaException.*;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
@@ -19,7 +17,32 @@ class Permutation {
         _alphabet = alphabet;
         checkcycles(cycles);
         _cycles = cycles;
+        _forward = new int[alphabet.size()];
+        _inverse = new int[alphabet.size()];
+        for (int i = 0; i < size(); i++) {
+            _forward[i] = i;
+            _inverse[i] = i;
+        }
+        boolean[] placed = new boolean[alphabet.size()];
+        for (int i = 0; i < cycles.length(); i++) {
+            if (cycles.charAt(i) == '(') {
+                int end = cycles.indexOf(')', i);
+                if (end == -1) {
+                    throw error("Incorrect permutation sequence");
+                }
+                addCycle(cycles.substring(i + 1, end), placed);
+                i = end;
+            }
+        }
+    }
 
+    /** A permutation of ALPHABET taking each index I to FORWARD[I], whose
+     *  inverse takes I to INVERSE[I].  The tables are used as they are,
+     *  not copied or checked. */
+    Permutation(Alphabet alphabet, int[] forward, int[] inverse) {
+        _alphabet = alphabet;
+        _forward = forward;
+        _inverse = inverse;
     }
 
     /** Check if the permutation cycle is valid.
@@ -35,9 +58,30 @@ class Permutation {
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     *  c0c1...cm. */
-    private void addCycle(String cycle) {
-        _cycles = _cycles + cycle;
+     *  c0c1...cm.  PLACED marks the characters of the cycles already
+     *  added, none of which, like none of the others in CYCLE, may
+     *  appear in it; the characters of CYCLE are marked in turn. */
+    private void addCycle(String cycle, boolean[] placed) {
+        String chars = cycle.replace(" ", "");
+        if (chars.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < chars.length(); i++) {
+            int c = _alphabet.toInt(chars.charAt(i));
+            if (placed[c]) {
+                throw error("Incorrect permutation sequence");
+            }
+            placed[c] = true;
+        }
+        int first = _alphabet.toInt(chars.charAt(0));
+        int prev = first;
+        for (int i = 1; i <= chars.length(); i++) {
+            int next = i == chars.length()
+                    ? first : _alphabet.toInt(chars.charAt(i));
+            _forward[prev] = next;
+            _inverse[next] = prev;
+            prev = next;
+        }
     }
 
     /** Return the value of P modulo the size of this permutation. */
@@ -51,96 +95,36 @@ class Permutation {
 
     /** Returns the size of the alphabet I permute. */
     int size() {
-        return _alphabet.size();
+        return _forward.length;
     }
 
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        int pmodsize = wrap(p);
-        char palph = alphabet().toChar(pmodsize);
-        char newp = permute(palph);
-        return alphabet().toInt(newp);
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        int cmodsize = wrap(c);
-        char calph = alphabet().toChar(cmodsize);
-        char newc = invert(calph);
-        return alphabet().toInt(newc);
+        return _inverse[wrap(c)];
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        if (_cycles.indexOf(p) == -1) {
+        if (!_alphabet.contains(p)) {
             return p;
         }
-        ArrayList<String> sublist = new ArrayList<String>();
-        for (int i = 0; i < _cycles.length(); i++) {
-            if (_cycles.charAt(i) == '(') {
-                int start = i;
-                int end = i;
-                while (_cycles.charAt(end) != ')') {
-                    end = end + 1;
-                }
-                sublist.add(_cycles.substring(start + 1, end));
-            }
-        }
-        char permutate = p;
-        for (String substring : sublist) {
-            int idx = substring.indexOf(p);
-            if (substring.length() == 1 && idx == 0) {
-                permutate = p;
-                break;
-            }
-            if (idx != -1) {
-                if (idx == substring.length() - 1) {
-                    permutate = substring.charAt(0);
-                } else {
-                    permutate = substring.charAt(idx + 1);
-                }
-                break;
-            }
-        }
-        return permutate;
+        return _alphabet.toChar(_forward[_alphabet.toInt(p)]);
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
     char invert(char c) {
-        if (_cycles.indexOf(c) == -1) {
+        if (!_alphabet.contains(c)) {
             return c;
         }
-        ArrayList<String> sublist = new ArrayList<String>();
-        for (int i = 0; i < _cycles.length(); i++) {
-            if (_cycles.charAt(i) == '(') {
-                int start = i;
-                int end = i;
-                while (_cycles.charAt(end) != ')') {
-                    end = end + 1;
-                }
-                sublist.add(_cycles.substring(start + 1, end));
-            }
-        }
-        char permutate = c;
-        for (String substring : sublist) {
-            int idx = substring.indexOf(c);
-            if (substring.length() == 1 && idx == 0) {
-                permutate = c;
-                break;
-            }
-            if (idx != -1) {
-                if (idx == 0) {
-                    permutate = substring.charAt(substring.length() - 1);
-                } else {
-                    permutate = substring.charAt(idx - 1);
-                }
-                break;
-            }
-        }
-        return permutate;
+        return _alphabet.toChar(_inverse[_alphabet.toInt(c)]);
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -151,17 +135,49 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        for (int i = 0; i < _alphabet.size(); i++) {
-            if (permute(i) == i) {
+        for (int i = 0; i < size(); i++) {
+            if (_forward[i] == i) {
                 return false;
             }
         }
         return true;
     }
+
+    @Override
+    public String toString() {
+        if (_cycles == null) {
+            StringBuilder cycles = new StringBuilder();
+            boolean[] seen = new boolean[size()];
+            for (int i = 0; i < size(); i++) {
+                if (seen[i] || _forward[i] == i) {
+                    continue;
+                }
+                if (cycles.length() > 0) {
+                    cycles.append(' ');
+                }
+                cycles.append('(');
+                for (int k = i; !seen[k]; k = _forward[k]) {
+                    seen[k] = true;
+                    cycles.append(_alphabet.toChar(k));
+                }
+                cycles.append(')');
+            }
+            _cycles = cycles.toString();
+        }
+        return _cycles;
+    }
+
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /** String of cycles. */
+    /** String of cycles, kept only for toString, or null until
+     *  toString if built from tables. */
     private String _cycles;
 
+    /** Index of the image of each index under this permutation. */
+    private final int[] _forward;
+
+    /** Index of the preimage of each index under this permutation. */
+    private final int[] _inverse;
+
 }
@@ -146,5 +146,24 @@ public class PermutationTest {
         assertTrue(permd3.derangement());
     }
 
+    /** Check that constructing a Permutation from CYCLES over the upper
+     *  case alphabet is rejected. */
+    private void checkRejected(String cycles) {
+        try {
+            new Permutation(cycles, new Alphabet());
+            fail("accepted " + cycles);
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void checkRepeatedCharacter() {
+        checkRejected("(AA)");
+        checkRejected("(ABA)");
+        checkRejected("(AB) (CA)");
+        checkRejected("(A) (A)");
+    }
+
 
 }
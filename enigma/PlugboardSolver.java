@@ -0,0 +1,534 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static enigma.EnigmaException.*;
+
+/** Recovers the plugboard of a message whose rotors, ring settings and
+ *  start positions are known.  With those fixed, the rotors at each
+ *  keystroke implement one permutation of the alphabet, which is
+ *  tabulated once; a trial plugboard then decrypts the message with two
+ *  table lookups per letter.  Plugboards are found by simulated
+ *  annealing over moves that connect or disconnect pairs of letters,
+ *  scored by an NgramModel.  A move changes the decryption only at
+ *  positions whose ciphertext letter, or whose letter leaving the
+ *  rotors, it replugs; those positions are found in indices built with
+ *  the table, and only they, and the n-grams containing them, are
+ *  revisited.  Independent restarts from random plugboards run in
+ *  parallel, and stop once several have agreed on the best score.
+ *  @author Fourth Teerakapibal
+ */
+final class PlugboardSolver {
+
+    /** A solver for CIPHERTEXT, the output of MACHINE in its current
+     *  state (its own plugboard being ignored), scored by MODEL. */
+    PlugboardSolver(Machine machine, String ciphertext, NgramModel model) {
+        Alphabet alpha = machine.spec().alphabet();
+        _size = alpha.size();
+        _model = model;
+        if (model.alphabet().size() != _size) {
+            throw error("N-gram model has a different alphabet");
+        }
+        int[] text = new int[ciphertext.length()];
+        int n = 0;
+        for (int i = 0; i < ciphertext.length(); i += 1) {
+            char c = ciphertext.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (!alpha.contains(c)) {
+                throw error("Message not in alphabet");
+            }
+            text[n] = alpha.toInt(c);
+            n += 1;
+        }
+        if (n < model.order()) {
+            throw error("Message too short to score");
+        }
+        _text = Arrays.copyOf(text, n);
+        _alphabet = alpha;
+        _core = new int[n * _size];
+        MachineSpec spec = machine.spec();
+        Cursor cursor = machine.cursor();
+        cursor.setPlugboard(new Permutation("", alpha));
+        for (int i = 0; i < n; i += 1) {
+            spec.step(cursor);
+            for (int c = 0; c < _size; c += 1) {
+                _core[i * _size + c] = spec.path(cursor, c);
+            }
+        }
+        _textStart = new int[_size + 1];
+        _byText = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            _textStart[_text[i] + 1] += 1;
+        }
+        for (int t = 0; t < _size; t += 1) {
+            _textStart[t + 1] += _textStart[t];
+        }
+        int[] next = Arrays.copyOf(_textStart, _size);
+        for (int i = 0; i < n; i += 1) {
+            _byText[next[_text[i]]++] = i;
+        }
+        _outputStart = new int[_size * _size * _size + 1];
+        _byOutput = new int[n * _size];
+        for (int i = 0; i < n; i += 1) {
+            for (int w = 0; w < _size; w += 1) {
+                _outputStart[outputKey(_text[i], _core[i * _size + w], w)
+                             + 1] += 1;
+            }
+        }
+        for (int key = 0; key < _outputStart.length - 1; key += 1) {
+            _outputStart[key + 1] += _outputStart[key];
+        }
+        next = Arrays.copyOf(_outputStart, _outputStart.length - 1);
+        for (int i = 0; i < n; i += 1) {
+            for (int w = 0; w < _size; w += 1) {
+                _byOutput[next[outputKey(_text[i], _core[i * _size + w],
+                                         w)]++] = i;
+            }
+        }
+    }
+
+    /** Return the key in _outputStart of the positions whose ciphertext
+     *  letter is T and at which the rotors take W to V. */
+    private int outputKey(int t, int v, int w) {
+        return (t * _size + v) * _size + w;
+    }
+
+    /** Return the best plugboard of at most MAXPAIRS pairs found in
+     *  RESTARTS attempts, run on the common fork-join pool. */
+    Solution solve(int restarts, int maxPairs) {
+        return solve(restarts, maxPairs, 0, ForkJoinPool.commonPool());
+    }
+
+    /** Return the best plugboard of at most MAXPAIRS pairs found in
+     *  RESTARTS attempts, run on POOL, drawing random numbers from a
+     *  generator seeded with SEED.  Attempts not yet started when
+     *  CONVERGED attempts have reached the best score are skipped. */
+    Solution solve(int restarts, int maxPairs, long seed,
+                   ForkJoinPool pool) {
+        if (restarts <= 0) {
+            throw error("Number of restarts must be positive");
+        }
+        Search search = new Search(maxPairs, seed);
+        return pool.invoke(new Restarts(search, 0, restarts));
+    }
+
+    /** A plugboard found by a solver, with its score. */
+    final class Solution {
+
+        /** A solution connecting each letter index to PLUG[index], with
+         *  score SCORE. */
+        Solution(int[] plug, double score) {
+            _plug = plug;
+            _solutionScore = score;
+        }
+
+        /** Return my plugboard as a permutation of the alphabet. */
+        Permutation plugboard() {
+            return new Permutation(toString(), _alphabet);
+        }
+
+        /** Return my score: the sum of the log-probabilities of the
+         *  n-grams of my decryption. */
+        double score() {
+            return _solutionScore;
+        }
+
+        /** Return my pairs as cycles, as in "(AB) (CD)". */
+        @Override
+        public String toString() {
+            StringBuilder cycles = new StringBuilder();
+            for (int a = 0; a < _plug.length; a += 1) {
+                if (_plug[a] > a) {
+                    if (cycles.length() > 0) {
+                        cycles.append(' ');
+                    }
+                    cycles.append('(').append(_alphabet.toChar(a))
+                        .append(_alphabet.toChar(_plug[a])).append(')');
+                }
+            }
+            return cycles.toString();
+        }
+
+        /** Partner of each letter index. */
+        private final int[] _plug;
+        /** Score of my decryption. */
+        private final double _solutionScore;
+    }
+
+    /** Fill PLAIN with my ciphertext decrypted with plugboard PLUG. */
+    private void decrypt(int[] plug, int[] plain) {
+        for (int i = 0; i < _text.length; i += 1) {
+            plain[i] = plug[_core[i * _size + plug[_text[i]]]];
+        }
+    }
+
+    /** State shared by the restarts of one call to solve. */
+    private static class Search {
+
+        /** A search for plugboards of at most MAXPAIRS pairs, with
+         *  random numbers seeded by SEED. */
+        Search(int maxPairs, long seed) {
+            _maxPairs = maxPairs;
+            _seed = seed;
+        }
+
+        /** Record that a restart reached SCORE. */
+        synchronized void report(double score) {
+            if (score > _best + EPSILON) {
+                _best = score;
+                _agreed.set(1);
+            } else if (score >= _best - EPSILON) {
+                _agreed.incrementAndGet();
+            }
+        }
+
+        /** Return true iff enough restarts have reached the best
+         *  score. */
+        boolean converged() {
+            return _agreed.get() >= CONVERGED;
+        }
+
+        /** Most pairs in a plugboard. */
+        private final int _maxPairs;
+        /** Seed for random numbers. */
+        private final long _seed;
+        /** Best score reached by any restart. */
+        private double _best = Double.NEGATIVE_INFINITY;
+        /** Number of restarts that reached _best. */
+        private final AtomicInteger _agreed = new AtomicInteger();
+    }
+
+    /** Runs a range of restarts, splitting it among workers. */
+    private class Restarts extends RecursiveTask<Solution> {
+
+        /** Run restarts LO .. HI-1 of SEARCH. */
+        Restarts(Search search, int lo, int hi) {
+            _search = search;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected Solution compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                Restarts left = new Restarts(_search, _lo, mid);
+                left.fork();
+                Solution right = new Restarts(_search, mid, _hi).compute();
+                return better(left.join(), right);
+            }
+            if (_search.converged()) {
+                return null;
+            }
+            return new Climber(_search, _lo).run();
+        }
+
+        /** The search I am part of. */
+        private final Search _search;
+        /** First restart of my range. */
+        private final int _lo;
+        /** End of my range of restarts. */
+        private final int _hi;
+    }
+
+    /** Return the better of solutions S0 and S1, either of which may be
+     *  null if skipped, preferring S0 on a tie. */
+    private static Solution better(Solution s0, Solution s1) {
+        if (s1 == null || s0 != null && s0.score() >= s1.score()) {
+            return s0;
+        }
+        return s1;
+    }
+
+    /** One annealing run from a random plugboard. */
+    private class Climber {
+
+        /** Restart number NUMBER of SEARCH. */
+        Climber(Search search, int number) {
+            _search = search;
+            _random = new SplittableRandom(search._seed + number);
+        }
+
+        /** Anneal until a sweep at zero temperature finds no improving
+         *  move, and return the plugboard reached. */
+        Solution run() {
+            int n = _text.length, k = _model.order();
+            _plug = new int[_size];
+            _plain = new int[n];
+            _window = new float[n - k + 1];
+            _changed = new int[n];
+            _was = new int[n];
+            _marked = new int[_window.length];
+            _newWindow = new float[_window.length];
+            _windows = new int[_window.length];
+            _letterMarks = new int[_size];
+            randomPlugboard();
+            decrypt(_plug, _plain);
+            double score = 0;
+            for (int j = 0; j < _window.length; j += 1) {
+                _window[j] = _model.score(_plain, j);
+                score += _window[j];
+            }
+            double temp = START_TEMP;
+            while (true) {
+                boolean improved = false;
+                for (int a = 0; a < _size; a += 1) {
+                    for (int b = a + 1; b < _size; b += 1) {
+                        double delta = tryMove(a, b);
+                        if (Double.isNaN(delta)) {
+                            continue;
+                        }
+                        if (delta > EPSILON
+                            || temp > 0 && delta < 0
+                               && _random.nextDouble()
+                                  < Math.exp(delta / temp)) {
+                            keep();
+                            score += delta;
+                            improved |= delta > EPSILON;
+                        } else {
+                            undo();
+                        }
+                    }
+                }
+                if (temp == 0 && !improved) {
+                    break;
+                }
+                temp = temp * COOLING < MIN_TEMP ? 0 : temp * COOLING;
+            }
+            _search.report(score);
+            return new Solution(_plug.clone(), score);
+        }
+
+        /** Connect random pairs of letters, up to the maximum. */
+        private void randomPlugboard() {
+            for (int c = 0; c < _size; c += 1) {
+                _plug[c] = c;
+            }
+            int pairs = _random.nextInt(Math.min(_search._maxPairs,
+                                                 _size / 2) + 1);
+            for (int p = 0; p < pairs; p += 1) {
+                int a = _random.nextInt(_size), b = _random.nextInt(_size);
+                if (a != b && _plug[a] == a && _plug[b] == b) {
+                    _plug[a] = b;
+                    _plug[b] = a;
+                    _pairs += 1;
+                }
+            }
+        }
+
+        /** Apply the move on letters A and B to _plug and _plain: if they
+         *  are connected, disconnect them; otherwise connect them,
+         *  connecting their former partners to each other.  Returns the
+         *  change in score, or NaN, with nothing changed, if the move
+         *  would exceed the maximum number of pairs. */
+        private double tryMove(int a, int b) {
+            int x = _plug[a], y = _plug[b];
+            _undo[0] = a;
+            _undo[1] = x;
+            _undo[2] = b;
+            _undo[3] = y;
+            _undoPairs = _pairs;
+            if (x == b) {
+                _plug[a] = a;
+                _plug[b] = b;
+                _pairs -= 1;
+            } else if (x == a && y == b) {
+                if (_pairs == _search._maxPairs) {
+                    return Double.NaN;
+                }
+                _plug[a] = b;
+                _plug[b] = a;
+                _pairs += 1;
+            } else {
+                _plug[x] = x;
+                _plug[y] = y;
+                _plug[a] = b;
+                _plug[b] = a;
+                if (x != a && y != b) {
+                    _plug[x] = y;
+                    _plug[y] = x;
+                }
+            }
+            return rescore();
+        }
+
+        /** Redecrypt with _plug the positions that the last move can
+         *  change, recording those that do, and return the change in
+         *  score of the windows containing them.  The move replugs only
+         *  the letters in _undo.  A position changes only if its
+         *  ciphertext letter is one of them, or else if its letter
+         *  leaving the rotors, which the move leaves as it was, is. */
+        private double rescore() {
+            int k = _model.order();
+            _epoch += 1;
+            _numChanged = 0;
+            _numWindows = 0;
+            int numMoved = 0;
+            for (int u = 0; u < _undo.length; u += 1) {
+                if (_letterMarks[_undo[u]] != _epoch) {
+                    _letterMarks[_undo[u]] = _epoch;
+                    _moved[numMoved] = _undo[u];
+                    numMoved += 1;
+                }
+            }
+            for (int m = 0; m < numMoved; m += 1) {
+                int t = _moved[m];
+                for (int q = _textStart[t]; q < _textStart[t + 1]; q += 1) {
+                    redecrypt(_byText[q]);
+                }
+            }
+            for (int m = 0; m < numMoved; m += 1) {
+                int v = _moved[m];
+                for (int t = 0; t < _size; t += 1) {
+                    if (_letterMarks[t] == _epoch) {
+                        continue;
+                    }
+                    int key = outputKey(t, v, _plug[t]);
+                    for (int q = _outputStart[key];
+                         q < _outputStart[key + 1]; q += 1) {
+                        redecrypt(_byOutput[q]);
+                    }
+                }
+            }
+            double delta = 0;
+            for (int c = 0; c < _numChanged; c += 1) {
+                int i = _changed[c];
+                int lo = Math.max(0, i - k + 1);
+                int hi = Math.min(i, _window.length - 1);
+                for (int j = lo; j <= hi; j += 1) {
+                    if (_marked[j] != _epoch) {
+                        _marked[j] = _epoch;
+                        _windows[_numWindows] = j;
+                        _newWindow[_numWindows] = _model.score(_plain, j);
+                        delta += _newWindow[_numWindows] - _window[j];
+                        _numWindows += 1;
+                    }
+                }
+            }
+            return delta;
+        }
+
+        /** Redecrypt position I with _plug, recording it if it
+         *  changes. */
+        private void redecrypt(int i) {
+            int p = _plug[_core[i * _size + _plug[_text[i]]]];
+            if (p != _plain[i]) {
+                _changed[_numChanged] = i;
+                _was[_numChanged] = _plain[i];
+                _numChanged += 1;
+                _plain[i] = p;
+            }
+        }
+
+        /** Keep the last move. */
+        private void keep() {
+            for (int w = 0; w < _numWindows; w += 1) {
+                _window[_windows[w]] = _newWindow[w];
+            }
+        }
+
+        /** Undo the last move. */
+        private void undo() {
+            for (int u = 0; u < _undo.length; u += 2) {
+                _plug[_undo[u]] = _undo[u + 1];
+                _plug[_undo[u + 1]] = _undo[u];
+            }
+            _pairs = _undoPairs;
+            for (int c = 0; c < _numChanged; c += 1) {
+                _plain[_changed[c]] = _was[c];
+            }
+        }
+
+        /** The search I am part of. */
+        private final Search _search;
+        /** My random numbers. */
+        private final SplittableRandom _random;
+        /** Partner of each letter index in my current plugboard. */
+        private int[] _plug;
+        /** Letters, partners before the last move, of the letters it
+         *  affected. */
+        private final int[] _undo = new int[4];
+        /** Number of pairs in _plug. */
+        private int _pairs;
+        /** Number of pairs before the last move. */
+        private int _undoPairs;
+        /** My current decryption. */
+        private int[] _plain;
+        /** Score of each n-gram window of _plain. */
+        private float[] _window;
+        /** Positions changed by the last move. */
+        private int[] _changed;
+        /** Former letters at those positions. */
+        private int[] _was;
+        /** Number of positions changed by the last move. */
+        private int _numChanged;
+        /** Windows rescored by the last move. */
+        private int[] _windows;
+        /** Their new scores. */
+        private float[] _newWindow;
+        /** Number of windows rescored by the last move. */
+        private int _numWindows;
+        /** Epoch at which each window was last rescored. */
+        private int[] _marked;
+        /** Epoch of the last move that replugged each letter. */
+        private int[] _letterMarks;
+        /** The distinct letters replugged by the last move. */
+        private final int[] _moved = new int[4];
+        /** Number of moves tried. */
+        private int _epoch;
+    }
+
+    /** Number of restarts agreeing on the best score that ends a
+     *  search. */
+    private static final int CONVERGED = 3;
+
+    /** Scores closer than this are taken to be equal. */
+    private static final double EPSILON = 1e-6;
+
+    /** Initial annealing temperature, in units of log10 probability. */
+    private static final double START_TEMP = 2.0;
+
+    /** Factor by which the temperature drops after each sweep. */
+    private static final double COOLING = 0.7;
+
+    /** Temperature below which annealing becomes pure hill climbing. */
+    private static final double MIN_TEMP = 0.05;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** The alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Scoring model. */
+    private final NgramModel _model;
+
+    /** Ciphertext, as alphabet indices. */
+    private final int[] _text;
+
+    /** Entry I * _size + C is the result of passing C through the
+     *  rotors, to the reflector and back, at keystroke I. */
+    private final int[] _core;
+
+    /** The positions whose ciphertext letter is T are _byText[Q] for
+     *  _textStart[T] <= Q < _textStart[T + 1]. */
+    private final int[] _textStart;
+
+    /** Positions, grouped by ciphertext letter, as for _textStart. */
+    private final int[] _byText;
+
+    /** The positions whose ciphertext letter is T and at which the
+     *  rotors take W to V are _byOutput[Q] for _outputStart[K] <= Q <
+     *  _outputStart[K + 1], where K is outputKey(T, V, W). */
+    private final int[] _outputStart;
+
+    /** Positions, grouped as for _outputStart. */
+    private final int[] _byOutput;
+
+}
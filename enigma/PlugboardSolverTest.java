@@ -0,0 +1,60 @@
+package enigma;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+
+/** Tests of n-gram scoring and plugboard recovery.
+ *  @author Fourth Teerakapibal
+ */
+public class PlugboardSolverTest {
+
+    /** English text used both to train a model and as a message. */
+    private static final String PLAINTEXT =
+        "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOODMADEOFSLIDING"
+        + "FOLDINGROSEWOODNEATLYPUTITALLTOGETHERINITSCASEITLAYCOMPACTLY"
+        + "FOLDEDINTONEARLYNOTHINGBUTHEOPENEDOUTTHEHINGESPUSHEDANDPULLED"
+        + "THEJOINTSANDHINGESTILLITLOOKEDALLSQUARESANDOBLONGS";
+
+    /** Return a machine with the naval rotors B Beta III IV I at
+     *  AXLE and plugboard PLUGBOARD. */
+    private Machine machine(String plugboard) {
+        Machine m = new Machine(new Alphabet(), 5, 3,
+                TestUtils.initRotor());
+        m.insertRotors(new String[]{"B", "Beta", "III", "IV", "I"});
+        m.setRotors("AXLE", "AAAA");
+        m.setPlugboard(new Permutation(plugboard, new Alphabet()));
+        return m;
+    }
+
+    @Test
+    public void ngramScores() {
+        NgramModel model = NgramModel.read(new Alphabet(),
+                new Scanner("TH 30\nHE 20\nAN 10\nTH 40\n"));
+        assertEquals(2, model.order());
+        int[] th = new int[]{19, 7, 4};
+        assertEquals(Math.log10(70.0 / 100), model.score(th, 0), 1e-6);
+        assertEquals(Math.log10(20.0 / 100), model.score(th, 1), 1e-6);
+        assertEquals(Math.log10(70.0 / 100) + Math.log10(20.0 / 100),
+                model.score(th), 1e-6);
+        assertTrue(model.score(new int[]{0, 0}, 0) < Math.log10(0.1));
+    }
+
+    @Test
+    public void recoversPlugboard() {
+        String pairs = "(AQ) (BY) (EX) (HK) (IP) (RT)";
+        String ciphertext = machine(pairs).convert(PLAINTEXT);
+        NgramModel model = NgramModel.train(new Alphabet(), 3, PLAINTEXT);
+        PlugboardSolver solver =
+            new PlugboardSolver(machine(""), ciphertext, model);
+        PlugboardSolver.Solution best =
+            solver.solve(16, 10, 1, ForkJoinPool.commonPool());
+        assertEquals(pairs, best.toString());
+        Machine m = machine("");
+        m.setPlugboard(best.plugboard());
+        assertEquals(PLAINTEXT, m.convert(ciphertext));
+    }
+
+}
@@ -18,6 +18,11 @@ class Reflector extends FixedRotor {
         throw error("Reflectors cannot have a backward conversion");
     }
 
+    @Override
+    int convertBackward(int e, int row) {
+        throw error("Reflectors cannot have a backward conversion");
+    }
+
     @Override
     void set(int posn) {
         if (posn != 0) {
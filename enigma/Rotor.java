@@ -1,6 +1,5 @@
 package enigma;
 
-
 import static enigma.EnigmaException.*;
 
 /** Superclass that represents a rotor in the enigma machine.
@@ -14,6 +13,7 @@ class Rotor {
         _permutation = perm;
         _setting = 0;
         _offset = 0;
+        compile();
     }
 
     /** Return my name. */
@@ -54,39 +54,81 @@ class Rotor {
     /** Set setting() to POSN.  */
     void set(int posn) {
         _setting = posn;
-
+        updateRow();
     }
 
     /** Set setting() to character CPOSN. */
     void set(char cposn) {
-        _setting = alphabet().toInt(cposn);
+        set(alphabet().toInt(cposn));
     }
 
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        int frontconvert = permutation().wrap(p + this.setting() - _offset);
-        int permutated = permutation().permute(frontconvert);
-        int backconvert = permutation().wrap(permutated - this.setting()
-                + _offset);
-        return backconvert;
+        return convertForward(p, _row);
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        int frontconvert = permutation().wrap(e + this.setting() - _offset);
-        int permutate = permutation().invert(frontconvert);
-        int backconvert = permutation().wrap(permutate - setting() + _offset);
-        return backconvert;
+        return convertBackward(e, _row);
+    }
+
+    /** Return the row of my wiring tables for setting SETTING and ring
+     *  offset OFFSET, for use with convertForward(int, int) and
+     *  convertBackward(int, int).  The row for the next setting is this
+     *  plus size(), wrapping to 0 after size() * (size() - 1). */
+    int row(int setting, int offset) {
+        return _permutation.wrap(setting - offset) * size();
+    }
+
+    /** Return the conversion of P according to my permutation when I am
+     *  at the position given by ROW, as returned by row().  Uses none of
+     *  my own state, so any number of threads may call it at once. */
+    int convertForward(int p, int row) {
+        if (_forwardBytes != null) {
+            return _forwardBytes[row + p] & BYTE_MASK;
+        } else if (_forwardChars != null) {
+            return _forwardChars[row + p];
+        }
+        int shift = row / size();
+        int permutated = _permutation.permute(_permutation.wrap(p + shift));
+        return _permutation.wrap(permutated - shift);
+    }
+
+    /** Return the conversion of E according to the inverse of my
+     *  permutation when I am at the position given by ROW, as returned by
+     *  row().  Uses none of my own state. */
+    int convertBackward(int e, int row) {
+        if (_backwardBytes != null) {
+            return _backwardBytes[row + e] & BYTE_MASK;
+        } else if (_backwardChars != null) {
+            return _backwardChars[row + e];
+        }
+        int shift = row / size();
+        int permutate = _permutation.invert(_permutation.wrap(e + shift));
+        return _permutation.wrap(permutate - shift);
     }
 
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
+        return atNotch(_setting);
+    }
+
+    /** Returns true iff I would allow the rotor to my left to advance
+     *  when at setting SETTING. */
+    boolean atNotch(int setting) {
         return false;
     }
 
+    /** Return the least positive number of advances that would bring
+     *  me from setting SETTING to a notch, or Integer.MAX_VALUE if I
+     *  have none. */
+    int stepsToNotch(int setting) {
+        return Integer.MAX_VALUE;
+    }
+
     /** Advance me one position, if possible. By default, does nothing. */
     void advance() {
     }
@@ -95,6 +137,44 @@ class Rotor {
      * @param a character converted to integer form*/
     void setoffset(int a) {
         _offset = a;
+        updateRow();
+    }
+
+    /** Precompute my forward and backward wiring for every relative
+     *  position of setting and ring, unless my alphabet is too large.
+     *  Entry S * size() + P holds the conversion of P when
+     *  setting() - offset is S (mod size()). */
+    private void compile() {
+        int n = size();
+        if (n > COMPILE_LIMIT) {
+            return;
+        }
+        if (n <= BYTE_LIMIT) {
+            _forwardBytes = new byte[n * n];
+            _backwardBytes = new byte[n * n];
+        } else {
+            _forwardChars = new char[n * n];
+            _backwardChars = new char[n * n];
+        }
+        for (int s = 0; s < n; s++) {
+            for (int p = 0; p < n; p++) {
+                int in = _permutation.wrap(p + s);
+                int fwd = _permutation.wrap(_permutation.permute(in) - s);
+                int bwd = _permutation.wrap(_permutation.invert(in) - s);
+                if (_forwardBytes != null) {
+                    _forwardBytes[s * n + p] = (byte) fwd;
+                    _backwardBytes[s * n + p] = (byte) bwd;
+                } else {
+                    _forwardChars[s * n + p] = (char) fwd;
+                    _backwardChars[s * n + p] = (char) bwd;
+                }
+            }
+        }
+    }
+
+    /** Point _row at the table row for my current setting and offset. */
+    private void updateRow() {
+        _row = row(_setting, _offset);
     }
 
     @Override
@@ -106,11 +186,35 @@ class Rotor {
     private final String _name;
 
     /** The permutation implemented by this rotor in its 0 position. */
-    private Permutation _permutation;
+    private final Permutation _permutation;
 
     /** The current setting of the rotor (initialized to 0). */
     private int _setting;
 
     /** Offset of the rotor from ring setting (initialized to 0).*/
     private int _offset;
+
+    /** Largest alphabet whose wiring tables are precomputed. */
+    private static final int COMPILE_LIMIT = 1024;
+
+    /** Largest alphabet whose wiring tables fit in bytes. */
+    private static final int BYTE_LIMIT = 256;
+
+    /** Mask recovering an unsigned table entry from a byte. */
+    private static final int BYTE_MASK = 0xFF;
+
+    /** Start of the wiring table row for my current setting and offset. */
+    private int _row;
+
+    /** Forward wiring by position, when my alphabet fits in bytes. */
+    private byte[] _forwardBytes;
+
+    /** Backward wiring by position, when my alphabet fits in bytes. */
+    private byte[] _backwardBytes;
+
+    /** Forward wiring by position, for larger alphabets. */
+    private char[] _forwardChars;
+
+    /** Backward wiring by position, for larger alphabets. */
+    private char[] _backwardChars;
 }
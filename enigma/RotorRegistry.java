@@ -0,0 +1,54 @@
+package enigma;
+
+import java.util.Collection;
+import java.util.HashMap;
+
+/** The rotors available to a machine, indexed by name and by position,
+ *  so that choosing the rotors for a setting costs one hash lookup per
+ *  slot however many rotors there are.  Each rotor's position (its
+ *  index) is the order in which it was given, and can stand for it in
+ *  bit sets.  When two rotors share a name, the first is the one found
+ *  by that name.
+ *  @author Fourth Teerakapibal
+ */
+final class RotorRegistry {
+
+    /** A registry of ROTORS, indexed in the order given. */
+    RotorRegistry(Collection<Rotor> rotors) {
+        _rotors = rotors.toArray(new Rotor[0]);
+        _indices = new HashMap<>(2 * _rotors.length);
+        for (int k = 0; k < _rotors.length; k += 1) {
+            _indices.putIfAbsent(_rotors[k].name(), k);
+        }
+    }
+
+    /** Return the number of rotors I hold. */
+    int size() {
+        return _rotors.length;
+    }
+
+    /** Return rotor #K, 0 <= K < size(). */
+    Rotor get(int k) {
+        return _rotors[k];
+    }
+
+    /** Return the index of the rotor named NAME, or -1 if there is
+     *  none. */
+    int indexOf(String name) {
+        Integer k = _indices.get(name);
+        return k == null ? -1 : k;
+    }
+
+    /** Return the rotor named NAME, or null if there is none. */
+    Rotor get(String name) {
+        int k = indexOf(name);
+        return k < 0 ? null : _rotors[k];
+    }
+
+    /** All rotors, in order of index. */
+    private final Rotor[] _rotors;
+
+    /** Index of the first rotor of each name. */
+    private final HashMap<String, Integer> _indices;
+
+}
@@ -0,0 +1,123 @@
+package enigma;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static enigma.EnigmaException.*;
+
+/** A long-running converter, listening on a local socket, that keeps
+ *  one machine configuration loaded so that clients pay neither JVM
+ *  startup nor configuration parsing per job.  Each connection is a
+ *  conversation in the format of Main's input: setting lines and message
+ *  lines, answered by the converted message lines, each written as soon
+ *  as its line is read.  An error in the input is answered by a line
+ *  "Error: MESSAGE" and ends the conversation.  Each connection is
+ *  served by its own thread, converting with its own Machine on the
+ *  shared MachineSpec.
+ *  @author Fourth Teerakapibal
+ */
+final class Server {
+
+    /** A server converting with machines described by SPEC, listening
+     *  on ADDRESS: a port number on the loopback interface (0 for any
+     *  free port), or else the path of a Unix domain socket, which must
+     *  not exist yet. */
+    Server(MachineSpec spec, String address) {
+        _spec = spec;
+        SocketAddress local;
+        try {
+            if (address.matches("\\d{1,5}")) {
+                local = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                              Integer.parseInt(address));
+                _channel = ServerSocketChannel.open();
+            } else {
+                _path = Path.of(address);
+                local = UnixDomainSocketAddress.of(_path);
+                _channel =
+                    ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            }
+            _channel.bind(local);
+        } catch (IOException | IllegalArgumentException excp) {
+            throw error("could not listen on %s", address);
+        }
+        _pool = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Return the address on which I listen. */
+    SocketAddress address() {
+        try {
+            return _channel.getLocalAddress();
+        } catch (IOException excp) {
+            throw error("server is closed");
+        }
+    }
+
+    /** Accept and serve connections until I am closed. */
+    void serve() {
+        try {
+            while (true) {
+                SocketChannel client = _channel.accept();
+                _pool.execute(() -> converse(client));
+            }
+        } catch (ClosedChannelException excp) {
+            return;
+        } catch (IOException excp) {
+            throw error("could not accept connection");
+        } finally {
+            close();
+        }
+    }
+
+    /** Stop listening, dropping any conversations in progress, and
+     *  remove my socket file, if any. */
+    void close() {
+        _pool.shutdownNow();
+        try {
+            _channel.close();
+            if (_path != null) {
+                Files.deleteIfExists(_path);
+            }
+        } catch (IOException excp) {
+            throw error("could not close server");
+        }
+    }
+
+    /** Hold a conversation with CLIENT, closing it at the end.  A client
+     *  that goes away early is dropped. */
+    private void converse(SocketChannel client) {
+        try (client) {
+            Main.converse(_spec, Channels.newInputStream(client), client);
+        } catch (IOException | EnigmaException excp) {
+            return;
+        }
+    }
+
+    /** Description of the machines used. */
+    private final MachineSpec _spec;
+
+    /** Channel accepting connections. */
+    private final ServerSocketChannel _channel;
+
+    /** Path of my Unix domain socket, or null if I listen on a port. */
+    private Path _path;
+
+    /** Threads serving connections, one per connection. */
+    private final ExecutorService _pool;
+
+}
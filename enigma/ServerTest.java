@@ -0,0 +1,148 @@
+package enigma;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Tests of the Server.
+ *  @author Fourth Teerakapibal
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Setting line used by the tests. */
+    private static final String SETTING =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)\n";
+
+    /** Return a new server listening on ADDRESS, serving on its own
+     *  thread. */
+    private Server start(String address) {
+        MachineSpec spec = new MachineSpec(new Alphabet(), 5, 3,
+                                           TestUtils.initRotor());
+        Server server = new Server(spec, address);
+        Thread thread = new Thread(server::serve);
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+
+    /** Send REQUEST to CLIENT. */
+    private void send(SocketChannel client, String request)
+        throws IOException {
+        ByteBuffer buf =
+            ByteBuffer.wrap(request.getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) {
+            client.write(buf);
+        }
+    }
+
+    /** Return the next line sent by CLIENT, with its terminator. */
+    private String readLine(SocketChannel client) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer buf = ByteBuffer.allocate(1);
+        while (client.read(buf) >= 0) {
+            line.write(buf.get(0));
+            buf.clear();
+            if (line.toString(StandardCharsets.UTF_8)
+                .endsWith(System.lineSeparator())) {
+                break;
+            }
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Return the reply of SERVER to a client sending REQUEST and then
+     *  closing its side of the connection. */
+    private String converse(Server server, String request)
+        throws IOException {
+        try (SocketChannel client = SocketChannel.open(server.address())) {
+            send(client, request);
+            client.shutdownOutput();
+            ByteArrayOutputStream reply = new ByteArrayOutputStream();
+            ByteBuffer buf = ByteBuffer.allocate(1024);
+            while (client.read(buf) >= 0) {
+                reply.write(buf.array(), 0, buf.position());
+                buf.clear();
+            }
+            return reply.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void serve() throws Exception {
+        Server server = start("0");
+        try {
+            String nl = System.lineSeparator();
+            assertEquals("QVPQS OKOIL PUBKJ ZPISF XDW" + nl
+                         + "BHCNS CXNUO AATZX SRCFY DGU" + nl,
+                         converse(server,
+                                  SETTING
+                                  + "FROM HIS SHOULDER HIAWATHA\n"
+                                  + "TOOK THE CAMERA OF ROSEWOOD\n"));
+            assertEquals("Error: Input must start with a setting" + nl,
+                         converse(server, "HELLO\n"));
+            assertEquals("UIVGJ ZUK" + nl
+                         + "Error: Message not in alphabet" + nl,
+                         converse(server,
+                                  "* B Beta III IV I AXLE (HQ) (EX)\n"
+                                  + "HELLO WOR\nhello\n"));
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void replyPerLine() throws Exception {
+        Server server = start("0");
+        String nl = System.lineSeparator();
+        try (SocketChannel client = SocketChannel.open(server.address())) {
+            send(client, SETTING + "FROM HIS SHOULDER HIAWATHA\n");
+            assertEquals("QVPQS OKOIL PUBKJ ZPISF XDW" + nl,
+                         readLine(client));
+            send(client, "TOOK THE CAMERA OF ROSEWOOD\n");
+            assertEquals("BHCNS CXNUO AATZX SRCFY DGU" + nl,
+                         readLine(client));
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void closeBeforeServe() {
+        Server server = new Server(new MachineSpec(new Alphabet(), 5, 3,
+                                   TestUtils.initRotor()), "0");
+        server.close();
+        server.serve();
+    }
+
+    @Test
+    public void unixSocket() throws Exception {
+        Path dir = Files.createTempDirectory("enigma");
+        Path path = dir.resolve("enigma.sock");
+        Server server = start(path.toString());
+        try {
+            assertTrue(Files.exists(path));
+            assertEquals("QVPQS OKOIL PUBKJ ZPISF XDW"
+                         + System.lineSeparator(),
+                         converse(server,
+                                  SETTING + "FROM HIS SHOULDER HIAWATHA\n"));
+        } finally {
+            server.close();
+            assertFalse(Files.exists(path));
+            Files.delete(dir);
+        }
+    }
+
+}
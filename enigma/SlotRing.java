@@ -0,0 +1,105 @@
+package enigma;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/** A bounded ring of preallocated slots that pass, in order, through a
+ *  fixed sequence of stages, each run by a single thread.  The first
+ *  stage fills a slot and releases it to the second, and so on; the
+ *  first stage reuses a slot only once the last has released it, which
+ *  holds back a stage that gets too far ahead of the others.  Each
+ *  stage owns one counter of the slots it has released, which only it
+ *  writes and the stages on either side read, so no locks are needed.
+ *  A stage waiting for a slot spins briefly and then parks until the
+ *  stage before it releases the slot, which unparks it, or the ring is
+ *  stopped.
+ *  @author Fourth Teerakapibal
+ */
+final class SlotRing<T> {
+
+    /** A ring of CAPACITY slots, a power of 2, made by FACTORY, passing
+     *  through STAGES stages. */
+    SlotRing(int capacity, int stages, Supplier<T> factory) {
+        assert Integer.bitCount(capacity) == 1 && stages > 0;
+        _slots = new Object[capacity];
+        for (int k = 0; k < capacity; k += 1) {
+            _slots[k] = factory.get();
+        }
+        _released = new AtomicLong[stages];
+        for (int s = 0; s < stages; s += 1) {
+            _released[s] = new AtomicLong();
+        }
+        _waiters = new AtomicReferenceArray<>(stages);
+    }
+
+    /** Return the next slot of stage STAGE, waiting until the stage
+     *  before it (or for stage 0, the last stage) has released it, or
+     *  null if the ring is stopped.  Until it is released, further
+     *  calls return the same slot. */
+    @SuppressWarnings("unchecked")
+    T acquire(int stage) {
+        long seq = _released[stage].get();
+        int spins = 0;
+        while (!available(stage, seq)) {
+            if (_stopped) {
+                return null;
+            }
+            if (spins < SPINS) {
+                spins += 1;
+                Thread.onSpinWait();
+            } else {
+                _waiters.set(stage, Thread.currentThread());
+                if (!available(stage, seq) && !_stopped) {
+                    LockSupport.park(this);
+                }
+                _waiters.set(stage, null);
+            }
+        }
+        return _stopped ? null : (T) _slots[(int) seq & (_slots.length - 1)];
+    }
+
+    /** Release the slot last acquired by stage STAGE to the next
+     *  stage, waking that stage if it is parked waiting for it. */
+    void release(int stage) {
+        AtomicLong released = _released[stage];
+        released.set(released.get() + 1);
+        LockSupport.unpark(_waiters.get((stage + 1) % _released.length));
+    }
+
+    /** Stop the ring: stages waiting for slots, and any that ask for
+     *  them later, receive null. */
+    void stop() {
+        _stopped = true;
+        for (int s = 0; s < _waiters.length(); s += 1) {
+            LockSupport.unpark(_waiters.get(s));
+        }
+    }
+
+    /** Return true iff slot SEQ is ready for stage STAGE. */
+    private boolean available(int stage, long seq) {
+        if (stage == 0) {
+            return seq < _released[_released.length - 1].get()
+                + _slots.length;
+        }
+        return seq < _released[stage - 1].get();
+    }
+
+    /** Number of times a waiting stage spins before parking. */
+    private static final int SPINS = 128;
+
+
+    /** The slots, used in rotation. */
+    private final Object[] _slots;
+
+    /** Number of slots released by each stage. */
+    private final AtomicLong[] _released;
+
+    /** The thread of each stage while it is parked, or else null. */
+    private final AtomicReferenceArray<Thread> _waiters;
+
+    /** True once the ring is stopped. */
+    private volatile boolean _stopped;
+
+}
@@ -1,5 +1,6 @@
 package enigma;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /** Utility definitions for use in unit tests.
@@ -18,6 +19,58 @@ class TestUtils {
         return testId + " (" + String.format(msgFormat, args) + ")";
     }
 
+    /** Return new instances of the naval rotors I to VIII, Beta and
+     *  Gamma, and reflectors B and C, in that order. */
+    static ArrayList<Rotor> initRotor() {
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        MovingRotor i = new MovingRotor("I",
+                new Permutation("(AELTPHQXRU) (BKNW) (CMOY) (DFG) "
+                        + "(IV) (JZ) (S)",
+                        new Alphabet()), "Q");
+        MovingRotor ii = new MovingRotor("II",
+                new Permutation("(FIXVYOMW) (CDKLHUP) (ESZ) (BJ) "
+                        + "(GR) (NT) (A) (Q)",
+                        new Alphabet()), "E");
+        MovingRotor iii = new MovingRotor("III",
+                new Permutation("(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)",
+                        new Alphabet()), "V");
+        MovingRotor iv = new MovingRotor("IV",
+                new Permutation("(AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)",
+                        new Alphabet()), "J");
+        MovingRotor v = new MovingRotor("V",
+                new Permutation("(AVOLDRWFIUQ) (BZKSMNHYC) (EGTJPX)",
+                        new Alphabet()), "Z");
+        MovingRotor vi = new MovingRotor("VI",
+                new Permutation("(AJQDVLEOZWIYTS) (CGMNHFUX) (BPRK)",
+                        new Alphabet()), "ZM");
+        MovingRotor vii = new MovingRotor("VII",
+                new Permutation("(ANOUPFRIMBZTLWKSVEGCJYDHXQ)",
+                        new Alphabet()), "ZM");
+        MovingRotor viii = new MovingRotor("VIII",
+                new Permutation("(AFLSETWUNDHOZVICQ) (BKJ) (GXY) (MPR)",
+                        new Alphabet()), "ZM");
+        FixedRotor beta = new FixedRotor("Beta",
+                new Permutation("(ALBEVFCYODJWUGNMQTZSKPR) (HIX)",
+                        new Alphabet()));
+        FixedRotor gamma = new FixedRotor("Gamma",
+                new Permutation("(AFNIRLBSQWVXGUZDKMTPCOYJHE)",
+                        new Alphabet()));
+        Reflector b = new Reflector("B",
+                new Permutation("(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) "
+                        + "(LO) (MP) (RX) (SZ) (TV)",
+                        new Alphabet()));
+        Reflector c = new Reflector("C",
+                new Permutation("(AR) (BD) (CO) (EJ) (FN) (GT) (HK) (IV) "
+                        + "(LM) (PW) (QZ) (SX) (UY)",
+                        new Alphabet()));
+        rotors.add(i); rotors.add(ii); rotors.add(iii);
+        rotors.add(iv); rotors.add(v);
+        rotors.add(vi); rotors.add(vii); rotors.add(viii);
+        rotors.add(beta); rotors.add(gamma);
+        rotors.add(b); rotors.add(c);
+        return rotors;
+    }
+
     /** The naval rotors in the A (0) setting. */
     static final HashMap<String, String> NAVALA = new HashMap<>();
     static {
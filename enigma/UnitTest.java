@@ -11,7 +11,11 @@ public class UnitTest {
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
         textui.runClasses(PermutationTest.class, MovingRotorTest.class,
-                MachineTest.class);
+                MachineTest.class, AlphabetTest.class,
+                GroupFormatterTest.class, KeySearchTest.class,
+                PlugboardSolverTest.class, BombeTest.class,
+                ServerTest.class, EnigmaStreamsTest.class,
+                MainTest.class);
     }
 
 }